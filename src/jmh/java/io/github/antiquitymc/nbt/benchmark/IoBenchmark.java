@@ -0,0 +1,180 @@
+package io.github.antiquitymc.nbt.benchmark;
+
+import io.github.antiquitymc.nbt.CompoundTag;
+import io.github.antiquitymc.nbt.ListTag;
+import io.github.antiquitymc.nbt.LongArrayTag;
+import io.github.antiquitymc.nbt.NamedTag;
+import io.github.antiquitymc.nbt.NbtIo;
+import io.github.antiquitymc.nbt.StringTag;
+import io.github.antiquitymc.nbt.Tag;
+import io.github.antiquitymc.nbt.TagType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IoBenchmark {
+    @Param({"levelDat", "deepCompounds", "longArrays", "stringList"})
+    public String data;
+
+    private NamedTag tag;
+    private byte[] uncompressed;
+    private byte[] gzipped;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // A copy that caches its encoding, and the compound deep inside it that changes before each write
+    private NamedTag cached;
+    private CompoundTag changed;
+    private int tick;
+
+    @Setup
+    public void setup() throws IOException {
+        tag = createTag(data);
+
+        NbtIo.write(out, tag);
+        uncompressed = out.toByteArray();
+        out.reset();
+
+        NbtIo.writeGzipped(out, tag);
+        gzipped = out.toByteArray();
+        out.reset();
+
+        cached = createTag(data);
+        CompoundTag root = (CompoundTag) cached.getTag();
+        root.setEncodingCached(true);
+        changed = deepest(root);
+    }
+
+    /**
+     * Follows the first nested compound down to the deepest one.
+     */
+    private static CompoundTag deepest(CompoundTag tag) {
+        for (Tag value : tag.values()) {
+            if (value instanceof CompoundTag) {
+                return deepest((CompoundTag) value);
+            }
+        }
+
+        return tag;
+    }
+
+    private static NamedTag createTag(String data) throws IOException {
+        switch (data) {
+            case "levelDat":
+                return NbtIo.readGzipped(IoBenchmark.class.getResourceAsStream("/level.dat"));
+            case "deepCompounds":
+                return new NamedTag("", deepCompound(new Random(0), 8, 4));
+            case "longArrays":
+                return new NamedTag("", longArrays(new Random(0)));
+            case "stringList":
+                return new NamedTag("", stringList(new Random(0)));
+            default:
+                throw new IllegalArgumentException("Unknown data: " + data);
+        }
+    }
+
+    /**
+     * A tree of small compounds with primitive values, like entities and block entities.
+     */
+    private static CompoundTag deepCompound(Random random, int depth, int children) {
+        CompoundTag tag = new CompoundTag();
+        tag.putInt("x", random.nextInt());
+        tag.putInt("y", random.nextInt(256));
+        tag.putLong("Time", random.nextLong());
+        tag.putDouble("Value", random.nextDouble());
+        tag.putByte("Flags", (byte) random.nextInt(4));
+        tag.putString("id", "minecraft:entity_" + random.nextInt(16));
+
+        if (depth > 0) {
+            for (int i = 0; i < children; i++) {
+                tag.put("Child" + i, deepCompound(random, depth - 1, i == 0 ? children : 1));
+            }
+        }
+
+        return tag;
+    }
+
+    /**
+     * Packed block states and heightmaps, like chunk sections.
+     */
+    private static CompoundTag longArrays(Random random) {
+        CompoundTag tag = new CompoundTag();
+
+        for (int i = 0; i < 24; i++) {
+            long[] values = new long[4096];
+
+            for (int j = 0; j < values.length; j++) {
+                values[j] = random.nextLong();
+            }
+
+            tag.put("BlockStates" + i, new LongArrayTag(values));
+        }
+
+        return tag;
+    }
+
+    private static CompoundTag stringList(Random random) {
+        ListTag<StringTag> list = new ListTag<>(TagType.Standard.STRING);
+
+        for (int i = 0; i < 10_000; i++) {
+            list.add(new StringTag("minecraft:block_" + random.nextInt(1000)));
+        }
+
+        CompoundTag tag = new CompoundTag();
+        tag.put("Palette", list);
+        return tag;
+    }
+
+    @Benchmark
+    public NamedTag read() throws IOException {
+        return NbtIo.read(new ByteArrayInputStream(uncompressed));
+    }
+
+    @Benchmark
+    public NamedTag readGzipped() throws IOException {
+        return NbtIo.readGzipped(new ByteArrayInputStream(gzipped));
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        out.reset();
+        NbtIo.write(out, tag);
+        return out.size();
+    }
+
+    /**
+     * Changes one value deep in the tree before each write, like periodic saves of a mostly idle chunk.
+     */
+    @Benchmark
+    public int writeCached() throws IOException {
+        changed.putInt("Tick", tick++);
+        out.reset();
+        NbtIo.write(out, cached);
+        return out.size();
+    }
+
+    @Benchmark
+    public int writeGzipped() throws IOException {
+        out.reset();
+        NbtIo.writeGzipped(out, tag);
+        return out.size();
+    }
+}
@@ -6,12 +6,25 @@ import java.io.IOException;
 import java.util.Objects;
 
 public final class BooleanTag implements Tag {
+    public static final BooleanTag TRUE = new BooleanTag(true);
+    public static final BooleanTag FALSE = new BooleanTag(false);
+
     private final boolean value;
 
     public BooleanTag(boolean value) {
         this.value = value;
     }
 
+    /**
+     * Gets the canonical boolean tag for a value.
+     *
+     * @param value the value
+     * @return {@link #TRUE} or {@link #FALSE}
+     */
+    public static BooleanTag of(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
     public boolean getValue() {
         return value;
     }
@@ -26,12 +39,17 @@ public final class BooleanTag implements Tag {
         output.writeBoolean(value);
     }
 
+    @Override
+    public long serializedSize() {
+        return Byte.BYTES;
+    }
+
     public static BooleanTag read(DataInput input) throws IOException {
-        return new BooleanTag(input.readBoolean());
+        return of(input.readBoolean());
     }
 
     static BooleanTag fromByte(ByteTag tag) {
-        return new BooleanTag(tag.getValue() != 0);
+        return of(tag.getValue() != 0);
     }
 
     @Override
@@ -29,9 +29,22 @@ public final class ByteArrayTag implements Tag {
     @Override
     public void write(DataOutput output) throws IOException {
         output.writeInt(value.length);
-        for (byte b : value) {
-            output.writeByte(b);
-        }
+        output.write(value);
+    }
+
+    @Override
+    public long serializedSize() {
+        return Integer.BYTES + (long) value.length;
+    }
+
+    /**
+     * Creates a copy of this tag with a copy of the backing array.
+     *
+     * @return the copy
+     */
+    @Override
+    public ByteArrayTag copy() {
+        return new ByteArrayTag(value.clone());
     }
 
     public static ByteArrayTag read(DataInput input) throws IOException {
@@ -5,12 +5,30 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 public final class ByteTag implements Tag {
+    private static final ByteTag[] CACHE = new ByteTag[256];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new ByteTag((byte) (i + Byte.MIN_VALUE));
+        }
+    }
+
     private final byte value;
 
     public ByteTag(byte value) {
         this.value = value;
     }
 
+    /**
+     * Gets the canonical byte tag for a value.
+     *
+     * @param value the value
+     * @return the cached tag
+     */
+    public static ByteTag of(byte value) {
+        return CACHE[value - Byte.MIN_VALUE];
+    }
+
     public byte getValue() {
         return value;
     }
@@ -25,8 +43,13 @@ public final class ByteTag implements Tag {
         output.writeByte(value);
     }
 
+    @Override
+    public long serializedSize() {
+        return Byte.BYTES;
+    }
+
     public static ByteTag read(DataInput input) throws IOException {
-        return new ByteTag(input.readByte());
+        return of(input.readByte());
     }
 
     @Override
@@ -0,0 +1,244 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The encoded payload of a compound that caches the encoding of its tree.
+ *
+ * <p>Arrays, custom tags, shared tags and containers without a {@linkplain ChangeTracker tracker}
+ * can change without a tracker noticing, so they are left out. The offsets at which they belong are
+ * kept as holes, and the tags are written into them on every write.
+ */
+final class CachedEncoding {
+    private static final int INITIAL_HOLES = 8;
+
+    private final byte[] bytes;
+    private final int[] holeOffsets;
+    private final Tag[] holeTags;
+    private final int holeCount;
+
+    private CachedEncoding(byte[] bytes, int[] holeOffsets, Tag[] holeTags, int holeCount) {
+        this.bytes = bytes;
+        this.holeOffsets = holeOffsets;
+        this.holeTags = holeTags;
+        this.holeCount = holeCount;
+    }
+
+    /**
+     * Encodes the payload of a compound, copying the clean subtrees from its previous encoding.
+     *
+     * @param map      the backing map of the compound
+     * @param tracker  the tracker of the map
+     * @param previous the previous encoding, or null
+     * @return the encoding
+     */
+    static CachedEncoding build(CompactTagMap map, ChangeTracker tracker, CachedEncoding previous) throws IOException {
+        Builder builder = new Builder(previous);
+        // Cleared first, so that shared tags found during the build make the map dirty again
+        tracker.dirty = false;
+        map.encode(builder, previous != null ? 0 : -1);
+        return builder.finish();
+    }
+
+    /**
+     * Writes the payload, with the left out tags in their holes.
+     *
+     * @param output the data output
+     */
+    void write(DataOutput output) throws IOException {
+        int position = 0;
+
+        for (int i = 0; i < holeCount; i++) {
+            int offset = holeOffsets[i];
+            output.write(bytes, position, offset - position);
+            holeTags[i].write(output);
+            position = offset;
+        }
+
+        output.write(bytes, position, bytes.length - position);
+    }
+
+    /**
+     * Computes the size of the payload with the left out tags.
+     *
+     * @return the size in bytes
+     */
+    long serializedSize() {
+        long size = bytes.length;
+
+        for (int i = 0; i < holeCount; i++) {
+            size += holeTags[i].serializedSize();
+        }
+
+        return size;
+    }
+
+    /**
+     * Finds the first hole after an offset.
+     */
+    private int firstHoleAfter(int offset) {
+        int low = 0;
+        int high = holeCount;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (holeOffsets[middle] <= offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Encodes a tree into a new payload.
+     */
+    static final class Builder {
+        private final CachedEncoding previous;
+        private final NbtWriter writer;
+        // Marks the trackers encoded by this build
+        private final Object build = new Object();
+        private int[] holeOffsets = new int[INITIAL_HOLES];
+        private Tag[] holeTags = new Tag[INITIAL_HOLES];
+        private int holeCount;
+
+        private Builder(CachedEncoding previous) {
+            this.previous = previous;
+            // Most changes keep the size, so the buffer often ends up exactly sized
+            this.writer = previous != null ? new NbtWriter(new byte[previous.bytes.length]) : new NbtWriter();
+        }
+
+        NbtWriter writer() {
+            return writer;
+        }
+
+        /**
+         * Encodes the value of a tag in a tracked compound or list.
+         *
+         * @param tag           the tag
+         * @param parent        the tracker of the compound or list
+         * @param previousStart the offset of the compound or list in the previous encoding, or -1
+         * @param start         the offset of the compound or list in this encoding
+         */
+        void value(Tag tag, ChangeTracker parent, int previousStart, int start) throws IOException {
+            if (isImmutable(tag)) {
+                tag.write(writer);
+                return;
+            }
+
+            ChangeTracker tracker = track(tag, parent);
+
+            if (tracker == null) {
+                addHole(writer.size(), tag);
+                return;
+            }
+
+            int valueStart = writer.size();
+            int firstHole = holeCount;
+            int previousValueStart = previousStart >= 0 && tracker.offset >= 0 ? previousStart + tracker.offset : -1;
+
+            if (!tracker.dirty && previousValueStart >= 0) {
+                copy(previousValueStart, tracker.length, tracker.holes);
+            } else {
+                tracker.dirty = false;
+
+                if (tag instanceof CompoundTag) {
+                    ((CompoundTag) tag).encode(this, previousValueStart);
+                } else {
+                    ((ListTag<?>) tag).encode(this, previousValueStart);
+                }
+            }
+
+            tracker.offset = valueStart - start;
+            tracker.length = writer.size() - valueStart;
+            tracker.holes = holeCount - firstHole;
+        }
+
+        private static boolean isImmutable(Tag tag) {
+            // All of these classes are final
+            return tag instanceof StringTag
+                || tag instanceof IntTag
+                || tag instanceof ByteTag
+                || tag instanceof ShortTag
+                || tag instanceof LongTag
+                || tag instanceof FloatTag
+                || tag instanceof DoubleTag
+                || tag instanceof BooleanTag
+                || tag instanceof CharTag;
+        }
+
+        /**
+         * Gets the tracker of a tag under a parent, creating it if needed.
+         *
+         * @return the tracker, or null if the tag is left out
+         */
+        private ChangeTracker track(Tag tag, ChangeTracker parent) {
+            ChangeTracker tracker;
+
+            if (tag instanceof CompoundTag) {
+                tracker = ((CompoundTag) tag).tracker(true);
+            } else if (tag instanceof ListTag) {
+                tracker = ((ListTag<?>) tag).tracker(true);
+            } else {
+                return null;
+            }
+
+            if (tracker == null || tracker.isWrittenByParent()) {
+                return null;
+            }
+
+            if (tracker.build == build || (tracker.parent != null && tracker.parent != parent)) {
+                // The other parent may have encoded the tag already, so it has to encode again without it
+                tracker.shared = true;
+
+                if (tracker.parent != null) {
+                    tracker.parent.changed();
+                }
+
+                return null;
+            }
+
+            if (tracker.parent == null) {
+                tracker.parent = parent;
+                tracker.offset = -1;
+            }
+
+            tracker.build = build;
+            return tracker;
+        }
+
+        private void copy(int offset, int length, int holes) throws IOException {
+            int shift = writer.size() - offset;
+            writer.write(previous.bytes, offset, length);
+
+            // A value starts with its own bytes, so the holes after its start are its own
+            int first = previous.firstHoleAfter(offset);
+
+            for (int i = first; i < first + holes; i++) {
+                addHole(previous.holeOffsets[i] + shift, previous.holeTags[i]);
+            }
+        }
+
+        private void addHole(int offset, Tag tag) {
+            if (holeCount == holeOffsets.length) {
+                holeOffsets = Arrays.copyOf(holeOffsets, holeCount * 2);
+                holeTags = Arrays.copyOf(holeTags, holeCount * 2);
+            }
+
+            holeOffsets[holeCount] = offset;
+            holeTags[holeCount] = tag;
+            holeCount++;
+        }
+
+        private CachedEncoding finish() {
+            byte[] buffer = writer.buffer();
+            byte[] bytes = buffer.length == writer.size() ? buffer : writer.toByteArray();
+            return new CachedEncoding(bytes, Arrays.copyOf(holeOffsets, holeCount), Arrays.copyOf(holeTags, holeCount), holeCount);
+        }
+    }
+}
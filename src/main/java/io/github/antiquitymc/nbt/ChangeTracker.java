@@ -0,0 +1,77 @@
+package io.github.antiquitymc.nbt;
+
+/**
+ * Tracks the changes to the backing collection of a compound or list tag for {@linkplain CachedEncoding
+ * cached encodings}.
+ *
+ * <p>Trackers are created when a compound starts caching its encoding, and for the compounds and lists
+ * below it when they are first encoded into it. Each tracker points to the tracker of the collection
+ * that contains it. A change marks the tracker dirty and propagates up until it reaches a tracker that is
+ * already dirty, so a clean tracker never has a dirty one below it, and a clean subtree can be copied from
+ * the previous encoding as a whole.
+ *
+ * <p>A tag that was found in more than one place is shared, and so is a compound that caches its own
+ * encoding. Their parents leave them out of their encodings and write them on every write, so changes
+ * don't propagate past them.
+ */
+final class ChangeTracker {
+    ChangeTracker parent;
+    boolean dirty = true;
+    boolean shared;
+    // Whether the compound caches the encoding of its tree, and the encoding if it has been built
+    boolean cached;
+    CachedEncoding encoding;
+    // The start of the encoded value relative to the start of the parent's, or -1 if not encoded in it
+    int offset = -1;
+    int length;
+    // The number of tags that were left out of the encoded value
+    int holes;
+    // The build that last encoded this tracker, to find tags that occur twice in one tree
+    Object build;
+
+    /**
+     * Marks this tracker and its parents dirty.
+     */
+    void changed() {
+        for (ChangeTracker tracker = this; !tracker.dirty; tracker = tracker.parent) {
+            tracker.dirty = true;
+
+            if (tracker.isWrittenByParent() || tracker.parent == null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks if the parents leave this tag out of their encodings and write it on every write.
+     */
+    boolean isWrittenByParent() {
+        return shared || cached;
+    }
+
+    /**
+     * Forgets the parent after this tag is removed from it.
+     *
+     * @param parent the tracker of the collection the tag was removed from
+     */
+    void detach(ChangeTracker parent) {
+        if (this.parent == parent && !shared) {
+            this.parent = null;
+        }
+    }
+
+    /**
+     * Gets the tracker of a tag without creating one.
+     *
+     * @return the tracker, or null if the tag has none
+     */
+    static ChangeTracker of(Tag tag) {
+        if (tag instanceof CompoundTag) {
+            return ((CompoundTag) tag).tracker(false);
+        } else if (tag instanceof ListTag) {
+            return ((ListTag<?>) tag).tracker(false);
+        }
+
+        return null;
+    }
+}
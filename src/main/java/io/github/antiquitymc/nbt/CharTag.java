@@ -25,6 +25,11 @@ public final class CharTag implements Tag {
         output.writeChar(value);
     }
 
+    @Override
+    public long serializedSize() {
+        return Character.BYTES;
+    }
+
     public static CharTag read(DataInput input) throws IOException {
         return new CharTag(input.readChar());
     }
@@ -0,0 +1,879 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The default backing map of compound tags, which stores primitive values without tag objects.
+ *
+ * <p>Entries are kept in insertion order in parallel arrays. Byte, short, int, long, float, double,
+ * boolean and char values are stored in a {@code long} slot, and a tag object for them is only
+ * created when it's requested through the {@link Map} interface. Other tags are stored as they are.
+ *
+ * <p>Small maps are searched by scanning their keys. Larger maps also build a linear-probing hash table
+ * of entry indices, which costs a single {@code int} array instead of an entry object per key.
+ *
+ * <p>Changes are reported to a {@link ChangeTracker} once the map has one, and a map that caches
+ * its encoding keeps a {@link CachedEncoding} of its tree.
+ */
+final class CompactTagMap extends AbstractMap<String, Tag> {
+    private static final byte OBJECT = 0;
+    private static final byte BYTE = 1;
+    private static final byte SHORT = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte CHAR = 8;
+
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int MAX_LINEAR_LOOKUP_SIZE = 8;
+
+    private String[] keys;
+    private byte[] kinds;
+    private long[] primitives;
+    private Tag[] objects;
+    private int size;
+    // Open-addressing hash table of entry indices plus one, with zero for free slots
+    private int[] table;
+    // Whether the arrays are shared with a copy and must be copied before they are changed
+    private boolean shared;
+    private ChangeTracker tracker;
+    int modCount;
+
+    CompactTagMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    CompactTagMap(int capacity) {
+        keys = new String[capacity];
+        kinds = new byte[capacity];
+        primitives = new long[capacity];
+        objects = new Tag[capacity];
+    }
+
+    private CompactTagMap(CompactTagMap source, Tag[] objects) {
+        keys = source.keys;
+        kinds = source.kinds;
+        primitives = source.primitives;
+        this.objects = objects;
+        size = source.size;
+        table = source.table;
+        shared = true;
+    }
+
+    /**
+     * Creates a deep copy of this map.
+     *
+     * <p>The arrays are shared between the maps until either of them is changed. Primitive values and
+     * immutable tags are shared as they are, and other tags are {@linkplain Tag#copy() copied}.
+     *
+     * @return the copy
+     */
+    CompactTagMap copy() {
+        Tag[] copiedObjects = objects;
+
+        for (int i = 0; i < size; i++) {
+            Tag tag = objects[i];
+
+            if (tag != null) {
+                Tag copy = tag.copy();
+
+                if (copy != tag) {
+                    if (copiedObjects == objects) {
+                        copiedObjects = objects.clone();
+                    }
+
+                    copiedObjects[i] = copy;
+                }
+            }
+        }
+
+        shared = true;
+        return new CompactTagMap(this, copiedObjects);
+    }
+
+    private void unshare() {
+        // Called before every change except clear
+        changed();
+
+        if (shared) {
+            keys = keys.clone();
+            kinds = kinds.clone();
+            primitives = primitives.clone();
+            objects = objects.clone();
+            table = table != null ? table.clone() : null;
+            shared = false;
+        }
+    }
+
+    /**
+     * Gets the change tracker of this map, creating it if requested.
+     *
+     * @param create whether to create the tracker
+     * @return the tracker, or null if not created
+     */
+    ChangeTracker tracker(boolean create) {
+        if (tracker == null && create) {
+            tracker = new ChangeTracker();
+        }
+
+        return tracker;
+    }
+
+    private void changed() {
+        if (tracker != null) {
+            tracker.changed();
+        }
+    }
+
+    private void detach(Tag value) {
+        if (tracker != null && value != null) {
+            ChangeTracker child = ChangeTracker.of(value);
+
+            if (child != null) {
+                child.detach(tracker);
+            }
+        }
+    }
+
+    boolean isEncodingCached() {
+        return tracker != null && tracker.cached;
+    }
+
+    /**
+     * Sets whether this map caches the encoding of its tree.
+     *
+     * @param cached whether to cache the encoding
+     * @see CompoundTag#setEncodingCached(boolean)
+     */
+    void setEncodingCached(boolean cached) {
+        ChangeTracker tracker = tracker(true);
+
+        synchronized (tracker) {
+            if (tracker.cached == cached) {
+                return;
+            }
+
+            tracker.cached = cached;
+            tracker.encoding = null;
+            tracker.offset = -1;
+        }
+
+        // The parent switches between leaving this map out and encoding it
+        if (tracker.parent != null && !tracker.shared) {
+            tracker.parent.changed();
+        }
+    }
+
+    /**
+     * Reads the payload of a compound tag, storing primitive values without creating tag objects.
+     *
+     * @param input the data input
+     * @return the map
+     */
+    static CompactTagMap read(DataInput input) throws IOException {
+        CompactTagMap map = new CompactTagMap();
+        byte typeId;
+
+        while ((typeId = input.readByte()) != TagType.Standard.END.getId()) {
+            TagType.Standard type = TagType.Standard.byId(typeId);
+            String key = NbtReader.readKey(input);
+
+            switch (type) {
+                case BYTE:
+                    map.putPrimitive(key, BYTE, input.readByte());
+                    break;
+                case SHORT:
+                    map.putPrimitive(key, SHORT, input.readShort());
+                    break;
+                case INT:
+                    map.putPrimitive(key, INT, input.readInt());
+                    break;
+                case LONG:
+                    map.putPrimitive(key, LONG, input.readLong());
+                    break;
+                case FLOAT:
+                    map.putPrimitive(key, FLOAT, Float.floatToRawIntBits(input.readFloat()));
+                    break;
+                case DOUBLE:
+                    map.putPrimitive(key, DOUBLE, Double.doubleToRawLongBits(input.readDouble()));
+                    break;
+                default:
+                    map.put(key, type.read(input));
+                    break;
+            }
+        }
+
+        return map;
+    }
+
+    /**
+     * Writes this map as the payload of a compound tag without creating tag objects for primitive values.
+     *
+     * @param output the data output
+     */
+    void write(DataOutput output) throws IOException {
+        ChangeTracker tracker = this.tracker;
+
+        if (tracker != null && tracker.cached) {
+            // Building the encoding changes the trackers below this map
+            synchronized (tracker) {
+                CachedEncoding encoding = tracker.encoding;
+
+                if (encoding == null || tracker.dirty) {
+                    if (output instanceof SizeCounter) {
+                        // Size queries don't build an encoding
+                        writeEntries(output);
+                        return;
+                    }
+
+                    encoding = CachedEncoding.build(this, tracker, encoding);
+                    tracker.encoding = encoding;
+                }
+
+                encoding.write(output);
+                return;
+            }
+        }
+
+        writeEntries(output);
+    }
+
+    private void writeEntries(DataOutput output) throws IOException {
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] == OBJECT) {
+                NamedTag.write(output, keys[i], objects[i]);
+            } else {
+                writePrimitive(output, i);
+            }
+        }
+
+        output.writeByte(TagType.Standard.END.getId());
+    }
+
+    /**
+     * Encodes this map into a cached encoding, copying the nested tags that haven't changed
+     * since the previous one.
+     *
+     * @param builder       the builder
+     * @param previousStart the offset of this map in the previous encoding, or -1
+     */
+    void encode(CachedEncoding.Builder builder, int previousStart) throws IOException {
+        NbtWriter writer = builder.writer();
+        int start = writer.size();
+
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] == OBJECT) {
+                NamedTag.writeHeader(writer, keys[i], objects[i]);
+                builder.value(objects[i], tracker, previousStart, start);
+            } else {
+                writePrimitive(writer, i);
+            }
+        }
+
+        writer.writeByte(TagType.Standard.END.getId());
+    }
+
+    private void writePrimitive(DataOutput output, int i) throws IOException {
+        byte kind = kinds[i];
+        long value = primitives[i];
+        output.writeByte(getTypeId(kind));
+        output.writeUTF(keys[i]);
+
+        switch (kind) {
+            case BYTE:
+            case BOOLEAN:
+                output.writeByte((int) value);
+                break;
+            case SHORT:
+            case CHAR:
+                output.writeShort((int) value);
+                break;
+            case INT:
+            case FLOAT:
+                output.writeInt((int) value);
+                break;
+            default:
+                output.writeLong(value);
+                break;
+        }
+    }
+
+    /**
+     * Computes the serialized size of this map as the payload of a compound tag.
+     *
+     * @return the size in bytes
+     */
+    long serializedSize() {
+        ChangeTracker tracker = this.tracker;
+
+        if (tracker != null && tracker.cached) {
+            synchronized (tracker) {
+                if (tracker.encoding != null && !tracker.dirty) {
+                    return tracker.encoding.serializedSize();
+                }
+            }
+        }
+
+        // Includes the end tag
+        long total = Byte.BYTES;
+
+        for (int i = 0; i < size; i++) {
+            byte kind = kinds[i];
+
+            if (kind == OBJECT) {
+                total += NamedTag.serializedSize(keys[i], objects[i]);
+            } else {
+                TagType.Standard type = TagType.Standard.byId(getTypeId(kind));
+                total += Byte.BYTES + ModifiedUtf8.serializedSize(keys[i]) + TagSkipper.fixedSize(type);
+            }
+        }
+
+        return total;
+    }
+
+    private static byte getTypeId(byte kind) {
+        switch (kind) {
+            case BYTE:
+            case BOOLEAN:
+                return TagType.Standard.BYTE.getId();
+            case SHORT:
+            case CHAR:
+                return TagType.Standard.SHORT.getId();
+            case INT:
+                return TagType.Standard.INT.getId();
+            case LONG:
+                return TagType.Standard.LONG.getId();
+            case FLOAT:
+                return TagType.Standard.FLOAT.getId();
+            default:
+                return TagType.Standard.DOUBLE.getId();
+        }
+    }
+
+    ////////////////////////////
+    //   Indexed access       //
+    ////////////////////////////
+
+    /**
+     * Finds the index of a key.
+     *
+     * @param key the key
+     * @return the index, or -1 if not found
+     */
+    int indexOf(Object key) {
+        if (key == null) {
+            return -1;
+        }
+
+        if (size <= MAX_LINEAR_LOOKUP_SIZE) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        if (table == null) {
+            buildTable();
+        }
+
+        int mask = table.length - 1;
+
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+
+            if (entry == 0) {
+                return -1;
+            } else if (keys[entry - 1].equals(key)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private void buildTable() {
+        // At most half full
+        table = new int[Integer.highestOneBit(size) * 4];
+
+        for (int i = 0; i < size; i++) {
+            addToTable(i);
+        }
+    }
+
+    private void addToTable(int i) {
+        int mask = table.length - 1;
+        int slot = hash(keys[i]) & mask;
+
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        table[slot] = i + 1;
+    }
+
+    /**
+     * Finds the index of a key that must be present.
+     *
+     * @param key the key
+     * @return the index
+     * @throws NoSuchElementException if the key is not found
+     */
+    int indexOfExisting(String key) {
+        int i = indexOf(key);
+
+        if (i < 0) {
+            throw new NoSuchElementException(key);
+        }
+
+        return i;
+    }
+
+    /**
+     * Gets the tag at an index, creating a tag object if it's a primitive value.
+     */
+    Tag getTag(int i) {
+        long value = primitives[i];
+
+        switch (kinds[i]) {
+            case BYTE:
+                return ByteTag.of((byte) value);
+            case SHORT:
+                return ShortTag.of((short) value);
+            case INT:
+                return IntTag.of((int) value);
+            case LONG:
+                return new LongTag(value);
+            case FLOAT:
+                return new FloatTag(Float.intBitsToFloat((int) value));
+            case DOUBLE:
+                return new DoubleTag(Double.longBitsToDouble(value));
+            case BOOLEAN:
+                return BooleanTag.of(value != 0);
+            case CHAR:
+                return new CharTag((char) value);
+            default:
+                return objects[i];
+        }
+    }
+
+    // The typed getters cast the tag object like CompoundTag does for other maps,
+    // so that mismatched types throw the same exceptions.
+
+    byte getByte(int i) {
+        return kinds[i] == BYTE ? (byte) primitives[i] : ((ByteTag) getTag(i)).getValue();
+    }
+
+    short getShort(int i) {
+        return kinds[i] == SHORT ? (short) primitives[i] : ((ShortTag) getTag(i)).getValue();
+    }
+
+    int getInt(int i) {
+        return kinds[i] == INT ? (int) primitives[i] : ((IntTag) getTag(i)).getValue();
+    }
+
+    long getLong(int i) {
+        return kinds[i] == LONG ? primitives[i] : ((LongTag) getTag(i)).getValue();
+    }
+
+    float getFloat(int i) {
+        return kinds[i] == FLOAT ? Float.intBitsToFloat((int) primitives[i]) : ((FloatTag) getTag(i)).getValue();
+    }
+
+    double getDouble(int i) {
+        return kinds[i] == DOUBLE ? Double.longBitsToDouble(primitives[i]) : ((DoubleTag) getTag(i)).getValue();
+    }
+
+    /**
+     * Gets a boolean, converting bytes like {@link CompoundTag#getBoolean(String)}.
+     */
+    boolean getBoolean(int i) {
+        switch (kinds[i]) {
+            case BOOLEAN:
+            case BYTE:
+                return primitives[i] != 0;
+            default:
+                throw new ClassCastException("Incompatible type: " + getTag(i).getType().getName());
+        }
+    }
+
+    /**
+     * Gets a char, converting shorts like {@link CompoundTag#getChar(String)}.
+     */
+    char getChar(int i) {
+        switch (kinds[i]) {
+            case CHAR:
+            case SHORT:
+                return (char) primitives[i];
+            default:
+                throw new ClassCastException("Incompatible type: " + getTag(i).getType().getName());
+        }
+    }
+
+    void putByte(String key, byte value) {
+        putPrimitive(key, BYTE, value);
+    }
+
+    void putShort(String key, short value) {
+        putPrimitive(key, SHORT, value);
+    }
+
+    void putInt(String key, int value) {
+        putPrimitive(key, INT, value);
+    }
+
+    void putLong(String key, long value) {
+        putPrimitive(key, LONG, value);
+    }
+
+    void putFloat(String key, float value) {
+        putPrimitive(key, FLOAT, Float.floatToRawIntBits(value));
+    }
+
+    void putDouble(String key, double value) {
+        putPrimitive(key, DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    void putBoolean(String key, boolean value) {
+        putPrimitive(key, BOOLEAN, value ? 1 : 0);
+    }
+
+    void putChar(String key, char value) {
+        putPrimitive(key, CHAR, value);
+    }
+
+    private void putPrimitive(String key, byte kind, long value) {
+        int i = indexOf(Objects.requireNonNull(key, "key"));
+
+        if (i < 0) {
+            i = append(key);
+        }
+
+        unshare();
+        detach(objects[i]);
+        kinds[i] = kind;
+        primitives[i] = value;
+        objects[i] = null;
+    }
+
+    private int append(String key) {
+        unshare();
+
+        if (size == keys.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            primitives = Arrays.copyOf(primitives, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+
+        int i = size++;
+        keys[i] = key;
+        modCount++;
+
+        if (table != null) {
+            if (size * 2 > table.length) {
+                // Rebuilt with a larger size on the next lookup
+                table = null;
+            } else {
+                addToTable(i);
+            }
+        }
+
+        return i;
+    }
+
+    private void removeAt(int i) {
+        unshare();
+        detach(objects[i]);
+        int moved = size - i - 1;
+
+        if (moved > 0) {
+            System.arraycopy(keys, i + 1, keys, i, moved);
+            System.arraycopy(kinds, i + 1, kinds, i, moved);
+            System.arraycopy(primitives, i + 1, primitives, i, moved);
+            System.arraycopy(objects, i + 1, objects, i, moved);
+        }
+
+        size--;
+        keys[size] = null;
+        objects[size] = null;
+        modCount++;
+        // The indices of the following entries have changed
+        table = null;
+    }
+
+    ////////////////////////////
+    //   Map implementation   //
+    ////////////////////////////
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Tag get(Object key) {
+        int i = indexOf(key);
+        return i >= 0 ? getTag(i) : null;
+    }
+
+    @Override
+    public Tag put(String key, Tag value) {
+        Objects.requireNonNull(value, "value");
+        int i = indexOf(Objects.requireNonNull(key, "key"));
+        Tag old = null;
+
+        if (i < 0) {
+            i = append(key);
+        } else {
+            old = getTag(i);
+        }
+
+        setTag(i, value);
+        return old;
+    }
+
+    private void setTag(int i, Tag value) {
+        unshare();
+        detach(objects[i]);
+        byte kind = getKind(value);
+        kinds[i] = kind;
+
+        if (kind == OBJECT) {
+            primitives[i] = 0;
+            objects[i] = value;
+            return;
+        }
+
+        objects[i] = null;
+
+        switch (kind) {
+            case BYTE:
+                primitives[i] = ((ByteTag) value).getValue();
+                break;
+            case SHORT:
+                primitives[i] = ((ShortTag) value).getValue();
+                break;
+            case INT:
+                primitives[i] = ((IntTag) value).getValue();
+                break;
+            case LONG:
+                primitives[i] = ((LongTag) value).getValue();
+                break;
+            case FLOAT:
+                primitives[i] = Float.floatToRawIntBits(((FloatTag) value).getValue());
+                break;
+            case DOUBLE:
+                primitives[i] = Double.doubleToRawLongBits(((DoubleTag) value).getValue());
+                break;
+            case BOOLEAN:
+                primitives[i] = ((BooleanTag) value).getValue() ? 1 : 0;
+                break;
+            default:
+                primitives[i] = ((CharTag) value).getValue();
+                break;
+        }
+    }
+
+    private static byte getKind(Tag tag) {
+        // All of these classes are final
+        if (tag instanceof IntTag) return INT;
+        if (tag instanceof ByteTag) return BYTE;
+        if (tag instanceof ShortTag) return SHORT;
+        if (tag instanceof LongTag) return LONG;
+        if (tag instanceof FloatTag) return FLOAT;
+        if (tag instanceof DoubleTag) return DOUBLE;
+        if (tag instanceof BooleanTag) return BOOLEAN;
+        if (tag instanceof CharTag) return CHAR;
+        return OBJECT;
+    }
+
+    @Override
+    public Tag remove(Object key) {
+        int i = indexOf(key);
+
+        if (i < 0) {
+            return null;
+        }
+
+        Tag old = getTag(i);
+        removeAt(i);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            for (int i = 0; i < size; i++) {
+                detach(objects[i]);
+            }
+
+            if (shared) {
+                keys = new String[INITIAL_CAPACITY];
+                kinds = new byte[INITIAL_CAPACITY];
+                primitives = new long[INITIAL_CAPACITY];
+                objects = new Tag[INITIAL_CAPACITY];
+                shared = false;
+            } else {
+                Arrays.fill(keys, 0, size, null);
+                Arrays.fill(objects, 0, size, null);
+            }
+
+            size = 0;
+            table = null;
+            modCount++;
+            changed();
+        }
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Itr<String>() {
+                    @Override
+                    String get(int i) {
+                        return keys[i];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                int i = indexOf(o);
+
+                if (i < 0) {
+                    return false;
+                }
+
+                removeAt(i);
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                CompactTagMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<String, Tag>> entrySet() {
+        return new AbstractSet<Entry<String, Tag>>() {
+            @Override
+            public Iterator<Entry<String, Tag>> iterator() {
+                return new Itr<Entry<String, Tag>>() {
+                    @Override
+                    Entry<String, Tag> get(int i) {
+                        return new MapEntry(keys[i], getTag(i));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                CompactTagMap.this.clear();
+            }
+        };
+    }
+
+    private abstract class Itr<E> implements Iterator<E> {
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        abstract E get(int i);
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+
+            last = next++;
+            return get(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * An entry that writes values set through it back to the map.
+     */
+    private final class MapEntry extends SimpleEntry<String, Tag> {
+        private static final long serialVersionUID = 1L;
+
+        MapEntry(String key, Tag value) {
+            super(key, value);
+        }
+
+        @Override
+        public Tag setValue(Tag value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
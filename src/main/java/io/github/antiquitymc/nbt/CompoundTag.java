@@ -4,12 +4,13 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public final class CompoundTag implements Tag, Map<String, Tag> {
@@ -17,9 +18,11 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
 
     /**
      * Constructs a mutable compound tag.
+     *
+     * <p>The entries are kept in insertion order, and primitive values are stored without tag objects.
      */
     public CompoundTag() {
-        this(new HashMap<>());
+        this(new CompactTagMap());
     }
 
     /**
@@ -33,6 +36,16 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
         this.tags = Objects.requireNonNull(tags, "tags");
     }
 
+    /**
+     * Constructs an empty thread-safe compound tag.
+     *
+     * @return the compound tag
+     * @see #toConcurrent()
+     */
+    public static CompoundTag concurrent() {
+        return new CompoundTag(new ConcurrentTagMap(PersistentTagMap.EMPTY));
+    }
+
     @Override
     public TagType getType() {
         return TagType.Standard.COMPOUND;
@@ -40,23 +53,116 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
 
     @Override
     public void write(DataOutput output) throws IOException {
+        if (tags instanceof CompactTagMap) {
+            ((CompactTagMap) tags).write(output);
+            return;
+        }
+
+        if (tags instanceof LazyTagMap && ((LazyTagMap) tags).write(output)) {
+            return;
+        }
+
         for (Entry<String, Tag> entry : tags.entrySet()) {
-            new NamedTag(entry.getKey(), entry.getValue()).write(output);
+            NamedTag.write(output, entry.getKey(), entry.getValue());
         }
 
         output.writeByte(TagType.Standard.END.getId());
     }
 
-    public static CompoundTag read(DataInput input) throws IOException {
-        HashMap<String, Tag> map = new HashMap<>();
-        byte typeId;
+    @Override
+    public long serializedSize() {
+        if (tags instanceof CompactTagMap) {
+            return ((CompactTagMap) tags).serializedSize();
+        }
 
-        while ((typeId = input.readByte()) != TagType.Standard.END.getId()) {
-            NamedTag tag = NamedTag.read(typeId, input);
-            map.put(tag.getName(), tag.getTag());
+        if (tags instanceof LazyTagMap) {
+            long size = ((LazyTagMap) tags).serializedSize();
+
+            if (size >= 0) {
+                return size;
+            }
         }
 
-        return new CompoundTag(map);
+        // Includes the end tag
+        long size = Byte.BYTES;
+
+        for (Entry<String, Tag> entry : tags.entrySet()) {
+            size += NamedTag.serializedSize(entry.getKey(), entry.getValue());
+        }
+
+        return size;
+    }
+
+    /**
+     * Sets whether this compound keeps the encoding of its tree between writes.
+     *
+     * <p>While enabled, a write copies the encoding of every nested compound and list that hasn't changed
+     * since the previous write, and only encodes the ones on the paths to the changes again. This suits
+     * large trees that are written repeatedly with few changes in between, like chunks that are saved
+     * periodically. The encoding takes about as much memory as the written bytes, and it's dropped when
+     * caching is disabled.
+     *
+     * <p>Array tags and other tags that can change without the compound noticing are written on every write,
+     * and so are compounds and lists that are contained more than once in the tree or in several trees,
+     * and compounds and lists with other backing collections. Copies don't cache their encoding.
+     * Writing a compound that caches its encoding is thread-safe, but changing it during a write is not.
+     *
+     * @param cached whether to cache the encoding
+     * @throws UnsupportedOperationException if this compound wasn't created with {@link #CompoundTag()}
+     *                                       or read from NBT
+     */
+    public void setEncodingCached(boolean cached) {
+        if (!(tags instanceof CompactTagMap)) {
+            throw new UnsupportedOperationException("Only compounds created with CompoundTag() or read from NBT can cache their encoding");
+        }
+
+        ((CompactTagMap) tags).setEncodingCached(cached);
+    }
+
+    /**
+     * Checks if this compound keeps the encoding of its tree between writes.
+     *
+     * @return true if cached
+     * @see #setEncodingCached(boolean)
+     */
+    public boolean isEncodingCached() {
+        return tags instanceof CompactTagMap && ((CompactTagMap) tags).isEncodingCached();
+    }
+
+    /**
+     * Gets the change tracker of the backing map, creating it if requested.
+     *
+     * @param create whether to create the tracker
+     * @return the tracker, or null if the backing map can't be tracked or has no tracker yet
+     */
+    ChangeTracker tracker(boolean create) {
+        return tags instanceof CompactTagMap ? ((CompactTagMap) tags).tracker(create) : null;
+    }
+
+    /**
+     * Encodes this compound into a cached encoding. Only compounds with a tracker are encoded this way.
+     */
+    void encode(CachedEncoding.Builder builder, int previousStart) throws IOException {
+        ((CompactTagMap) tags).encode(builder, previousStart);
+    }
+
+    public static CompoundTag read(DataInput input) throws IOException {
+        return new CompoundTag(CompactTagMap.read(input));
+    }
+
+    /**
+     * Reads a compound tag that decodes its entries on first access.
+     *
+     * <p>The encoded entries are kept in memory, and only their keys and offsets are decoded up front.
+     * Nested compounds are lazy as well. As long as no entries are added or removed,
+     * writing the compound copies the encoded bytes of the entries that haven't been modified.
+     * Adding or removing entries, or obtaining a view of the entries, decodes the whole level.
+     *
+     * @param input the data input
+     * @return the lazy compound tag
+     */
+    public static CompoundTag readLazy(DataInput input) throws IOException {
+        return new CompoundTag(LazyTagMap.read(input));
     }
 
     /**
@@ -68,8 +174,15 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException     if the key is present with a different type
      */
     public float getFloat(String key) {
-        if (containsKey(key)) {
-            return ((FloatTag) get(key)).getValue();
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            return map.getFloat(map.indexOfExisting(key));
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
+            return ((FloatTag) tag).getValue();
         } else {
             throw new NoSuchElementException(key);
         }
@@ -85,8 +198,16 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException if the key is present with a different type
      */
     public float getFloat(String key, float defaultValue) {
-        if (containsKey(key)) {
-            return ((FloatTag) get(key)).getValue();
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            int index = map.indexOf(key);
+            return index >= 0 ? map.getFloat(index) : defaultValue;
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
+            return ((FloatTag) tag).getValue();
         } else {
             return defaultValue;
         }
@@ -101,8 +222,15 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException     if the key is present with a different type
      */
     public double getDouble(String key) {
-        if (containsKey(key)) {
-            return ((DoubleTag) get(key)).getValue();
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            return map.getDouble(map.indexOfExisting(key));
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
+            return ((DoubleTag) tag).getValue();
         } else {
             throw new NoSuchElementException(key);
         }
@@ -118,8 +246,16 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException if the key is present with a different type
      */
     public double getDouble(String key, double defaultValue) {
-        if (containsKey(key)) {
-            return ((DoubleTag) get(key)).getValue();
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            int index = map.indexOf(key);
+            return index >= 0 ? map.getDouble(index) : defaultValue;
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
+            return ((DoubleTag) tag).getValue();
         } else {
             return defaultValue;
         }
@@ -134,8 +270,15 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException     if the key is present with a different type
      */
     public byte getByte(String key) {
-        if (containsKey(key)) {
-            return ((ByteTag) get(key)).getValue();
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            return map.getByte(map.indexOfExisting(key));
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
+            return ((ByteTag) tag).getValue();
         } else {
             throw new NoSuchElementException(key);
         }
@@ -151,8 +294,16 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException if the key is present with a different type
      */
     public byte getByte(String key, byte defaultValue) {
-        if (containsKey(key)) {
-            return ((ByteTag) get(key)).getValue();
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            int index = map.indexOf(key);
+            return index >= 0 ? map.getByte(index) : defaultValue;
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
+            return ((ByteTag) tag).getValue();
         } else {
             return defaultValue;
         }
@@ -167,8 +318,15 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException     if the key is present with a different type
      */
     public short getShort(String key) {
-        if (containsKey(key)) {
-            return ((ShortTag) get(key)).getValue();
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            return map.getShort(map.indexOfExisting(key));
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
+            return ((ShortTag) tag).getValue();
         } else {
             throw new NoSuchElementException(key);
         }
@@ -184,8 +342,16 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException if the key is present with a different type
      */
     public short getShort(String key, short defaultValue) {
-        if (containsKey(key)) {
-            return ((ShortTag) get(key)).getValue();
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            int index = map.indexOf(key);
+            return index >= 0 ? map.getShort(index) : defaultValue;
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
+            return ((ShortTag) tag).getValue();
         } else {
             return defaultValue;
         }
@@ -200,8 +366,15 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException     if the key is present with a different type
      */
     public int getInt(String key) {
-        if (containsKey(key)) {
-            return ((IntTag) get(key)).getValue();
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            return map.getInt(map.indexOfExisting(key));
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
+            return ((IntTag) tag).getValue();
         } else {
             throw new NoSuchElementException(key);
         }
@@ -217,8 +390,16 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException if the key is present with a different type
      */
     public int getInt(String key, int defaultValue) {
-        if (containsKey(key)) {
-            return ((IntTag) get(key)).getValue();
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            int index = map.indexOf(key);
+            return index >= 0 ? map.getInt(index) : defaultValue;
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
+            return ((IntTag) tag).getValue();
         } else {
             return defaultValue;
         }
@@ -233,8 +414,15 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException     if the key is present with a different type
      */
     public long getLong(String key) {
-        if (containsKey(key)) {
-            return ((LongTag) get(key)).getValue();
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            return map.getLong(map.indexOfExisting(key));
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
+            return ((LongTag) tag).getValue();
         } else {
             throw new NoSuchElementException(key);
         }
@@ -250,8 +438,16 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException if the key is present with a different type
      */
     public long getLong(String key, long defaultValue) {
-        if (containsKey(key)) {
-            return ((LongTag) get(key)).getValue();
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            int index = map.indexOf(key);
+            return index >= 0 ? map.getLong(index) : defaultValue;
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
+            return ((LongTag) tag).getValue();
         } else {
             return defaultValue;
         }
@@ -269,8 +465,14 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException     if the key is present with an incompatible type
      */
     public char getChar(String key) {
-        if (containsKey(key)) {
-            Tag tag = get(key);
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            return map.getChar(map.indexOfExisting(key));
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
             if (tag instanceof CharTag) {
                 return ((CharTag) tag).getValue();
             } else if (tag instanceof ShortTag) {
@@ -296,8 +498,15 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException if the key is present with an incompatible type
      */
     public char getChar(String key, char defaultValue) {
-        if (containsKey(key)) {
-            Tag tag = get(key);
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            int index = map.indexOf(key);
+            return index >= 0 ? map.getChar(index) : defaultValue;
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
             if (tag instanceof CharTag) {
                 return ((CharTag) tag).getValue();
             } else if (tag instanceof ShortTag) {
@@ -322,8 +531,14 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException     if the key is present with an incompatible type
      */
     public boolean getBoolean(String key) {
-        if (containsKey(key)) {
-            Tag tag = get(key);
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            return map.getBoolean(map.indexOfExisting(key));
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
             if (tag instanceof BooleanTag) {
                 return ((BooleanTag) tag).getValue();
             } else if (tag instanceof ByteTag) {
@@ -349,8 +564,15 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException if the key is present with an incompatible type
      */
     public boolean getBoolean(String key, boolean defaultValue) {
-        if (containsKey(key)) {
-            Tag tag = get(key);
+        if (tags instanceof CompactTagMap) {
+            CompactTagMap map = (CompactTagMap) tags;
+            int index = map.indexOf(key);
+            return index >= 0 ? map.getBoolean(index) : defaultValue;
+        }
+
+        Tag tag = get(key);
+
+        if (tag != null) {
             if (tag instanceof BooleanTag) {
                 return ((BooleanTag) tag).getValue();
             } else if (tag instanceof ByteTag) {
@@ -371,7 +593,8 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException if the key is present with an incompatible type
      */
     public /* TODO: @Nullable */ String getString(String key) {
-        return containsKey(key) ? ((StringTag) get(key)).getValue() : null;
+        Tag tag = get(key);
+        return tag != null ? ((StringTag) tag).getValue() : null;
     }
 
     /**
@@ -394,7 +617,7 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException if the key is present with a different type
      */
     public CompoundTag getOrCreateSubTag(String key) {
-        return (CompoundTag) computeIfAbsent(key, it -> new CompoundTag());
+        return (CompoundTag) computeIfAbsent(key, it -> isConcurrent() ? concurrent() : new CompoundTag());
     }
 
     /**
@@ -409,9 +632,9 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
      * @throws ClassCastException if the type is incompatible
      */
     public Tag get(String key, TagType type) {
-        if (containsKey(key)) {
-            Tag tag = get(key);
+        Tag tag = get(key);
 
+        if (tag != null) {
             if (tag.getType() == type) {
                 return tag;
             } else if (tag.getType() == type.getStandardEquivalent()) {
@@ -425,27 +648,51 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
     }
 
     public void putFloat(String key, float value) {
-        put(key, new FloatTag(value));
+        if (tags instanceof CompactTagMap) {
+            ((CompactTagMap) tags).putFloat(key, value);
+        } else {
+            put(key, new FloatTag(value));
+        }
     }
 
     public void putDouble(String key, double value) {
-        put(key, new DoubleTag(value));
+        if (tags instanceof CompactTagMap) {
+            ((CompactTagMap) tags).putDouble(key, value);
+        } else {
+            put(key, new DoubleTag(value));
+        }
     }
 
     public void putByte(String key, byte value) {
-        put(key, new ByteTag(value));
+        if (tags instanceof CompactTagMap) {
+            ((CompactTagMap) tags).putByte(key, value);
+        } else {
+            put(key, ByteTag.of(value));
+        }
     }
 
     public void putShort(String key, short value) {
-        put(key, new ShortTag(value));
+        if (tags instanceof CompactTagMap) {
+            ((CompactTagMap) tags).putShort(key, value);
+        } else {
+            put(key, ShortTag.of(value));
+        }
     }
 
     public void putInt(String key, int value) {
-        put(key, new IntTag(value));
+        if (tags instanceof CompactTagMap) {
+            ((CompactTagMap) tags).putInt(key, value);
+        } else {
+            put(key, IntTag.of(value));
+        }
     }
 
     public void putLong(String key, long value) {
-        put(key, new LongTag(value));
+        if (tags instanceof CompactTagMap) {
+            ((CompactTagMap) tags).putLong(key, value);
+        } else {
+            put(key, new LongTag(value));
+        }
     }
 
     public void putString(String key, String value) {
@@ -457,11 +704,167 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
     }
 
     public void putBoolean(String key, boolean value) {
-        put(key, new BooleanTag(value));
+        if (tags instanceof CompactTagMap) {
+            ((CompactTagMap) tags).putBoolean(key, value);
+        } else {
+            put(key, BooleanTag.of(value));
+        }
     }
 
     public void putChar(String key, char value) {
-        put(key, new CharTag(value));
+        if (tags instanceof CompactTagMap) {
+            ((CompactTagMap) tags).putChar(key, value);
+        } else {
+            put(key, new CharTag(value));
+        }
+    }
+
+    /**
+     * Creates a deep copy of this compound.
+     *
+     * <p>Compounds created with {@link #CompoundTag()} or read from NBT share their entries with the copy
+     * until either of them is changed, and only nested compounds, lists and array tags are copied up front,
+     * in the same way. Persistent compounds share their structure with the copy, and only the paths to
+     * array tags are copied, so a persistent compound without arrays is returned as it is.
+     * Compounds with other backing maps are copied into a new mutable compound.
+     *
+     * @return the copy
+     */
+    @Override
+    public CompoundTag copy() {
+        if (tags instanceof CompactTagMap) {
+            return new CompoundTag(((CompactTagMap) tags).copy());
+        } else if (isPersistent()) {
+            CompoundTag copy = this;
+
+            for (Entry<String, Tag> entry : tags.entrySet()) {
+                Tag value = entry.getValue().copy();
+
+                // Only arrays and the persistent tags that contain them are copied
+                if (value != entry.getValue()) {
+                    copy = copy.with(entry.getKey(), value);
+                }
+            }
+
+            return copy;
+        }
+
+        CompactTagMap copy = new CompactTagMap(Math.max(tags.size(), 1));
+        for (Entry<String, Tag> entry : tags.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copy());
+        }
+
+        return new CompoundTag(copy);
+    }
+
+    /**
+     * Checks if this compound is thread-safe.
+     *
+     * @return true if concurrent
+     * @see #toConcurrent()
+     */
+    public boolean isConcurrent() {
+        return tags instanceof ConcurrentTagMap;
+    }
+
+    /**
+     * Gets a thread-safe version of this compound.
+     *
+     * <p>A concurrent compound is returned as is. Otherwise the entries are copied into a new concurrent
+     * compound, nested compounds are converted as well and nested lists are made {@linkplain ListTag#toPersistent()
+     * persistent}.
+     *
+     * <p>Concurrent compounds never block readers. Every {@link Map} operation is atomic, including
+     * {@link #putIfAbsent}, {@link #computeIfAbsent} and {@link #getOrCreateSubTag}, and so are
+     * the typed getters and putters. Iterating or writing a concurrent compound uses a consistent snapshot
+     * of its entries; nested compounds are snapshotted separately. Tags that are put into
+     * a concurrent compound are not converted, so they should be concurrent or immutable too.
+     *
+     * @return the concurrent compound
+     */
+    public CompoundTag toConcurrent() {
+        if (isConcurrent()) {
+            return this;
+        }
+
+        PersistentTagMap map = PersistentTagMap.EMPTY;
+        for (Entry<String, Tag> entry : tags.entrySet()) {
+            Tag value = entry.getValue();
+
+            if (value instanceof CompoundTag) {
+                value = ((CompoundTag) value).toConcurrent();
+            } else if (value instanceof ListTag) {
+                value = ((ListTag<?>) value).toPersistent();
+            }
+
+            map = map.with(entry.getKey(), value);
+        }
+
+        return new CompoundTag(new ConcurrentTagMap(map));
+    }
+
+    /**
+     * Checks if this compound is persistent. Persistent compounds are immutable, and they share
+     * their structure with the compounds derived from them with {@link #with} and {@link #without}.
+     *
+     * @return true if persistent
+     */
+    public boolean isPersistent() {
+        return tags instanceof PersistentTagMap;
+    }
+
+    /**
+     * Gets a persistent version of this compound.
+     *
+     * <p>A persistent compound is returned as is. Otherwise the entries are copied into a new persistent
+     * compound, and nested compounds and lists are converted as well. Apart from the contents of
+     * array tags, persistent compounds are deeply immutable, so they can be shared between threads
+     * without copying or locking. Their entries are iterated in hash order.
+     *
+     * @return the persistent compound
+     */
+    public CompoundTag toPersistent() {
+        if (isPersistent()) {
+            return this;
+        }
+
+        PersistentTagMap map = PersistentTagMap.EMPTY;
+        for (Entry<String, Tag> entry : tags.entrySet()) {
+            map = map.with(entry.getKey(), PersistentTagMap.toPersistent(entry.getValue()));
+        }
+
+        return new CompoundTag(map);
+    }
+
+    /**
+     * Returns a persistent compound with an entry added or replaced. This compound is not changed.
+     *
+     * <p>Only the nodes on the path to the entry are copied. Compounds that aren't persistent are
+     * {@linkplain #toPersistent() converted} first, and so are compound and list values.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the new compound
+     */
+    public CompoundTag with(String key, Tag value) {
+        CompoundTag persistent = toPersistent();
+        PersistentTagMap map = (PersistentTagMap) persistent.tags;
+        PersistentTagMap newMap = map.with(key, PersistentTagMap.toPersistent(Objects.requireNonNull(value, "value")));
+        return newMap == map ? persistent : new CompoundTag(newMap);
+    }
+
+    /**
+     * Returns a persistent compound with an entry removed. This compound is not changed.
+     *
+     * @param key the key
+     * @return the new compound
+     * @see #with(String, Tag)
+     */
+    public CompoundTag without(String key) {
+        CompoundTag persistent = toPersistent();
+        PersistentTagMap map = (PersistentTagMap) persistent.tags;
+        PersistentTagMap newMap = map.without(key);
+        return newMap == map ? persistent : new CompoundTag(newMap);
     }
 
     @Override
@@ -501,6 +904,46 @@ public final class CompoundTag implements Tag, Map<String, Tag> {
         }
     }
 
+    @Override
+    public Tag putIfAbsent(String key, Tag value) {
+        return tags.putIfAbsent(Objects.requireNonNull(key), Objects.requireNonNull(value));
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return tags.remove(key, value);
+    }
+
+    @Override
+    public boolean replace(String key, Tag oldValue, Tag newValue) {
+        return tags.replace(key, oldValue, Objects.requireNonNull(newValue));
+    }
+
+    @Override
+    public Tag replace(String key, Tag value) {
+        return tags.replace(key, Objects.requireNonNull(value));
+    }
+
+    @Override
+    public Tag computeIfAbsent(String key, Function<? super String, ? extends Tag> mappingFunction) {
+        return tags.computeIfAbsent(Objects.requireNonNull(key), mappingFunction);
+    }
+
+    @Override
+    public Tag computeIfPresent(String key, BiFunction<? super String, ? super Tag, ? extends Tag> remappingFunction) {
+        return tags.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public Tag compute(String key, BiFunction<? super String, ? super Tag, ? extends Tag> remappingFunction) {
+        return tags.compute(Objects.requireNonNull(key), remappingFunction);
+    }
+
+    @Override
+    public Tag merge(String key, Tag value, BiFunction<? super Tag, ? super Tag, ? extends Tag> remappingFunction) {
+        return tags.merge(Objects.requireNonNull(key), value, remappingFunction);
+    }
+
     @Override
     public int size() {
         return tags.size();
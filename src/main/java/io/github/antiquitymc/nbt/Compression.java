@@ -0,0 +1,168 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * A compression format for encoded tags.
+ *
+ * <p>The {@linkplain Standard standard formats} can be detected from their first bytes.
+ * Other formats can be used by implementing this interface.
+ */
+public interface Compression {
+    String getName();
+
+    /**
+     * Gets the standard format of the data read and written by this compression.
+     *
+     * @return the standard format, or null if this is a custom format
+     */
+    Standard getStandardEquivalent();
+
+    /**
+     * Wraps an input stream of compressed data.
+     *
+     * @param in the compressed input stream
+     * @return the decompressed input stream, which closes {@code in} when closed
+     */
+    InputStream decompress(InputStream in) throws IOException;
+
+    /**
+     * Wraps an output stream to compress the data written to it.
+     *
+     * <p>The returned stream must be closed to write the end of the compressed data.
+     *
+     * @param out the output stream for the compressed data
+     * @return the compressing output stream, which closes {@code out} when closed
+     */
+    OutputStream compress(OutputStream out) throws IOException;
+
+    /**
+     * Gets a gzip compression that writes with a custom deflate level.
+     *
+     * @param level the deflate level, from 0 to 9 or -1 for the default level
+     * @return the compression
+     */
+    static Compression gzip(int level) {
+        return new DeflateCompression(Standard.GZIP, level);
+    }
+
+    /**
+     * Gets a zlib compression that writes with a custom deflate level.
+     *
+     * @param level the deflate level, from 0 to 9 or -1 for the default level
+     * @return the compression
+     */
+    static Compression zlib(int level) {
+        return new DeflateCompression(Standard.ZLIB, level);
+    }
+
+    enum Standard implements Compression {
+        NONE("None"),
+        GZIP("Gzip"),
+        ZLIB("Zlib"),
+        /**
+         * LZ4 in the block stream format of lz4-java, which must be on the class path to use it.
+         */
+        LZ4("LZ4"),
+        ;
+
+        /**
+         * The number of bytes needed to {@linkplain #detect detect} every standard format.
+         */
+        public static final int MAGIC_LENGTH = 8;
+
+        private final String name;
+
+        Standard(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Standard getStandardEquivalent() {
+            return this;
+        }
+
+        /**
+         * Checks if this format can be used. Only LZ4 may be unavailable.
+         *
+         * @return true if available
+         */
+        public boolean isAvailable() {
+            return this != LZ4 || CompressionStreams.isLz4Available();
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            switch (this) {
+                case GZIP:
+                    return CompressionStreams.gzipInput(in);
+                case ZLIB:
+                    return CompressionStreams.zlibInput(in);
+                case LZ4:
+                    return CompressionStreams.lz4Input(in);
+                default:
+                    return in;
+            }
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) throws IOException {
+            switch (this) {
+                case GZIP:
+                    return CompressionStreams.gzipOutput(out, Deflater.DEFAULT_COMPRESSION);
+                case ZLIB:
+                    return CompressionStreams.zlibOutput(out, Deflater.DEFAULT_COMPRESSION);
+                case LZ4:
+                    return CompressionStreams.lz4Output(out);
+                default:
+                    return out;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+        /**
+         * Detects the format of data from its first bytes.
+         *
+         * <p>Uncompressed tags start with their type ID, which never matches the magic bytes of the other formats.
+         * Zlib data is only detected with the default window size, which is what {@link Deflater} always writes.
+         *
+         * @param bytes  the byte array
+         * @param offset the start of the data
+         * @param length the number of available bytes, ideally at least {@link #MAGIC_LENGTH}
+         * @return the detected format, or {@link #NONE} if it's not compressed in a standard format
+         */
+        public static Standard detect(byte[] bytes, int offset, int length) {
+            if (length >= 2) {
+                int b0 = bytes[offset] & 0xFF;
+                int b1 = bytes[offset + 1] & 0xFF;
+
+                if (b0 == 0x1F && b1 == 0x8B) {
+                    return GZIP;
+                }
+
+                // Deflate with a 32 KiB window, no preset dictionary and a valid header checksum
+                if (b0 == 0x78 && (b1 & 0x20) == 0 && ((b0 << 8) | b1) % 31 == 0) {
+                    return ZLIB;
+                }
+            }
+
+            if (length >= MAGIC_LENGTH && CompressionStreams.isLz4Magic(bytes, offset)) {
+                return LZ4;
+            }
+
+            return NONE;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Creates the streams of the {@linkplain Compression.Standard standard compression formats}.
+ *
+ * <p>Gzip and zlib streams use inflaters and deflaters from the {@link ZlibPool},
+ * which they return when they are closed.
+ */
+final class CompressionStreams {
+    static final int BUFFER_SIZE = 8192;
+
+    private static final byte[] LZ4_MAGIC = {'L', 'Z', '4', 'B', 'l', 'o', 'c', 'k'};
+    private static final boolean LZ4_AVAILABLE = isClassPresent("net.jpountz.lz4.LZ4BlockInputStream");
+
+    private CompressionStreams() {
+    }
+
+    private static boolean isClassPresent(String name) {
+        try {
+            Class.forName(name, false, CompressionStreams.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    static boolean isLz4Available() {
+        return LZ4_AVAILABLE;
+    }
+
+    static boolean isLz4Magic(byte[] bytes, int offset) {
+        for (int i = 0; i < LZ4_MAGIC.length; i++) {
+            if (bytes[offset + i] != LZ4_MAGIC[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static void checkLevel(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Deflate level must be between -1 and 9, found " + level);
+        }
+    }
+
+    static InputStream gzipInput(InputStream in) throws IOException {
+        return new PooledGzipInputStream(in);
+    }
+
+    static OutputStream gzipOutput(OutputStream out, int level) throws IOException {
+        return new PooledGzipOutputStream(out, level);
+    }
+
+    static InputStream zlibInput(InputStream in) {
+        return new PooledInflaterInputStream(in, false);
+    }
+
+    static OutputStream zlibOutput(OutputStream out, int level) {
+        return new PooledDeflaterOutputStream(out, level, false);
+    }
+
+    static InputStream lz4Input(InputStream in) {
+        checkLz4Available();
+        return Lz4Streams.input(in);
+    }
+
+    static OutputStream lz4Output(OutputStream out) {
+        checkLz4Available();
+        return Lz4Streams.output(out);
+    }
+
+    private static void checkLz4Available() {
+        if (!LZ4_AVAILABLE) {
+            throw new UnsupportedOperationException("LZ4 compression requires lz4-java on the class path");
+        }
+    }
+
+    /**
+     * Holds the references to lz4-java so that they're only resolved when LZ4 is used.
+     */
+    private static final class Lz4Streams {
+        static InputStream input(InputStream in) {
+            return new net.jpountz.lz4.LZ4BlockInputStream(in);
+        }
+
+        static OutputStream output(OutputStream out) {
+            return new net.jpountz.lz4.LZ4BlockOutputStream(out);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package io.github.antiquitymc.nbt;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A thread-safe, lock-free backing map of compound tags.
+ *
+ * <p>The entries are held in a {@link PersistentTagMap} that is replaced with compare-and-set on every change.
+ * Reads never block, and every change is atomic. Iterators and writes see a consistent snapshot of the entries
+ * at the time they start, and never throw {@link java.util.ConcurrentModificationException}.
+ */
+final class ConcurrentTagMap extends AbstractMap<String, Tag> implements ConcurrentMap<String, Tag> {
+    private final AtomicReference<PersistentTagMap> map;
+
+    ConcurrentTagMap(PersistentTagMap map) {
+        this.map = new AtomicReference<>(map);
+    }
+
+    /**
+     * Gets the entries at this point in time.
+     *
+     * @return the immutable snapshot
+     */
+    PersistentTagMap snapshot() {
+        return map.get();
+    }
+
+    @Override
+    public int size() {
+        return map.get().size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.get().containsKey(key);
+    }
+
+    @Override
+    public Tag get(Object key) {
+        return map.get().get(key);
+    }
+
+    @Override
+    public Tag put(String key, Tag value) {
+        Objects.requireNonNull(value, "value");
+
+        while (true) {
+            PersistentTagMap current = map.get();
+
+            if (map.compareAndSet(current, current.with(key, value))) {
+                return current.get(key);
+            }
+        }
+    }
+
+    @Override
+    public Tag putIfAbsent(String key, Tag value) {
+        Objects.requireNonNull(value, "value");
+
+        while (true) {
+            PersistentTagMap current = map.get();
+            Tag old = current.get(key);
+
+            if (old != null || map.compareAndSet(current, current.with(key, value))) {
+                return old;
+            }
+        }
+    }
+
+    @Override
+    public Tag remove(Object key) {
+        while (true) {
+            PersistentTagMap current = map.get();
+            PersistentTagMap updated = current.without(key);
+
+            if (updated == current || map.compareAndSet(current, updated)) {
+                return current.get(key);
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        while (true) {
+            PersistentTagMap current = map.get();
+            Tag old = current.get(key);
+
+            if (old == null || !old.equals(value)) {
+                return false;
+            } else if (map.compareAndSet(current, current.without(key))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean replace(String key, Tag oldValue, Tag newValue) {
+        Objects.requireNonNull(newValue, "value");
+
+        while (true) {
+            PersistentTagMap current = map.get();
+            Tag old = current.get(key);
+
+            if (old == null || !old.equals(oldValue)) {
+                return false;
+            } else if (map.compareAndSet(current, current.with(key, newValue))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public Tag replace(String key, Tag value) {
+        Objects.requireNonNull(value, "value");
+
+        while (true) {
+            PersistentTagMap current = map.get();
+            Tag old = current.get(key);
+
+            if (old == null || map.compareAndSet(current, current.with(key, value))) {
+                return old;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        map.set(PersistentTagMap.EMPTY);
+    }
+
+    @Override
+    public Set<Entry<String, Tag>> entrySet() {
+        return new AbstractSet<Entry<String, Tag>>() {
+            @Override
+            public Iterator<Entry<String, Tag>> iterator() {
+                Iterator<Entry<String, Tag>> snapshot = map.get().entrySet().iterator();
+
+                return new Iterator<Entry<String, Tag>>() {
+                    private Entry<String, Tag> last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return snapshot.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Tag> next() {
+                        return last = snapshot.next();
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException();
+                        }
+
+                        ConcurrentTagMap.this.remove(last.getKey(), last.getValue());
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ConcurrentTagMap.this.size();
+            }
+        };
+    }
+}
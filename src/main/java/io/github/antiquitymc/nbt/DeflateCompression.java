@@ -0,0 +1,59 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Gzip or zlib compression with a custom deflate level.
+ */
+final class DeflateCompression implements Compression {
+    private final Standard format;
+    private final int level;
+
+    DeflateCompression(Standard format, int level) {
+        CompressionStreams.checkLevel(level);
+        this.format = format;
+        this.level = level;
+    }
+
+    @Override
+    public String getName() {
+        return format.getName();
+    }
+
+    @Override
+    public Standard getStandardEquivalent() {
+        return format;
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        return format.decompress(in);
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+        return format == Standard.GZIP
+            ? CompressionStreams.gzipOutput(out, level)
+            : CompressionStreams.zlibOutput(out, level);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DeflateCompression that = (DeflateCompression) o;
+        return level == that.level && format == that.format;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * format.hashCode() + level;
+    }
+
+    @Override
+    public String toString() {
+        return format.getName() + " (level " + level + ")";
+    }
+}
@@ -25,6 +25,11 @@ public final class DoubleTag implements Tag {
         output.writeDouble(value);
     }
 
+    @Override
+    public long serializedSize() {
+        return Double.BYTES;
+    }
+
     public static DoubleTag read(DataInput input) throws IOException {
         return new DoubleTag(input.readDouble());
     }
@@ -15,6 +15,11 @@ public enum EndTag implements Tag {
     public void write(DataOutput output) throws IOException {
     }
 
+    @Override
+    public long serializedSize() {
+        return 0;
+    }
+
     @Override
     public String toString() {
         return "End";
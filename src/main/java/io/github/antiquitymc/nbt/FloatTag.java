@@ -25,6 +25,11 @@ public final class FloatTag implements Tag {
         output.writeFloat(value);
     }
 
+    @Override
+    public long serializedSize() {
+        return Float.BYTES;
+    }
+
     public static FloatTag read(DataInput input) throws IOException {
         return new FloatTag(input.readFloat());
     }
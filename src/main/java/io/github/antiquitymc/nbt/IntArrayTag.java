@@ -29,19 +29,29 @@ public final class IntArrayTag implements Tag {
     @Override
     public void write(DataOutput output) throws IOException {
         output.writeInt(value.length);
+        NbtWriter.writeInts(output, value);
+    }
+
+    @Override
+    public long serializedSize() {
+        return Integer.BYTES + (long) value.length * Integer.BYTES;
+    }
 
-        for (int i : value) {
-            output.writeInt(i);
-        }
+    /**
+     * Creates a copy of this tag with a copy of the backing array.
+     *
+     * @return the copy
+     */
+    @Override
+    public IntArrayTag copy() {
+        return new IntArrayTag(value.clone());
     }
 
     public static IntArrayTag read(DataInput input) throws IOException {
         int length = input.readInt();
         int[] value = new int[length];
 
-        for (int i = 0; i < length; i++) {
-            value[i] = input.readInt();
-        }
+        NbtReader.readInts(input, value);
 
         return new IntArrayTag(value);
     }
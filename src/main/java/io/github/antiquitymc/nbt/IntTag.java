@@ -5,12 +5,32 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 public final class IntTag implements Tag {
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final IntTag[] CACHE = new IntTag[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new IntTag(i + CACHE_LOW);
+        }
+    }
+
     private final int value;
 
     public IntTag(int value) {
         this.value = value;
     }
 
+    /**
+     * Gets an int tag for a value. Values from -128 to 1023 return a cached tag.
+     *
+     * @param value the value
+     * @return the tag
+     */
+    public static IntTag of(int value) {
+        return value >= CACHE_LOW && value <= CACHE_HIGH ? CACHE[value - CACHE_LOW] : new IntTag(value);
+    }
+
     public int getValue() {
         return value;
     }
@@ -25,8 +45,13 @@ public final class IntTag implements Tag {
         output.writeInt(value);
     }
 
+    @Override
+    public long serializedSize() {
+        return Integer.BYTES;
+    }
+
     public static IntTag read(DataInput input) throws IOException {
-        return new IntTag(input.readInt());
+        return of(input.readInt());
     }
 
     @Override
@@ -0,0 +1,114 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+
+/**
+ * A bounded cache of canonical compound key strings, keyed by their encoded bytes.
+ *
+ * <p>When an {@link NbtReader} has a key cache, each compound key whose encoded bytes
+ * match a cached key is returned as the cached {@code String} instance without being decoded.
+ * This avoids keeping many copies of common keys like {@code id} or {@code Pos} in memory.
+ *
+ * <p>The cache is a fixed-size table in which newer keys replace older ones that share a slot.
+ * It is thread-safe and can be shared between readers on different threads.
+ */
+public final class KeyCache {
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * The maximum encoded length of cached keys. Longer keys are decoded normally.
+     */
+    static final int MAX_KEY_LENGTH = 64;
+
+    // Entries are immutable, so racy reads always see a complete entry or null
+    private final Entry[] entries;
+    private final int mask;
+
+    /**
+     * Constructs a key cache with the default capacity.
+     */
+    public KeyCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a key cache.
+     *
+     * @param capacity the maximum number of cached keys, rounded up to a power of two
+     */
+    public KeyCache(int capacity) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY + ", found " + capacity);
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.entries = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Gets the canonical string for a key, decoding and caching it if needed.
+     *
+     * @param bytes  the byte array
+     * @param offset the start of the encoded key
+     * @param length the number of encoded bytes, at most {@link #MAX_KEY_LENGTH}
+     * @return the key
+     * @throws UTFDataFormatException if the bytes are not valid modified UTF-8
+     */
+    String get(byte[] bytes, int offset, int length) throws UTFDataFormatException {
+        int hash = hash(bytes, offset, length);
+        int index = hash & mask;
+        Entry entry = entries[index];
+
+        if (entry != null && entry.hash == hash && entry.matches(bytes, offset, length)) {
+            return entry.value;
+        }
+
+        String value = ModifiedUtf8.decode(bytes, offset, length);
+        entries[index] = new Entry(hash, Arrays.copyOfRange(bytes, offset, offset + length), value);
+        return value;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 1;
+
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+
+        // Spread the high bits into the bits used for the index
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Entry {
+        private final int hash;
+        private final byte[] bytes;
+        private final String value;
+
+        Entry(int hash, byte[] bytes, String value) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.value = value;
+        }
+
+        boolean matches(byte[] bytes, int offset, int length) {
+            if (this.bytes.length != length) {
+                return false;
+            }
+
+            for (int i = 0; i < length; i++) {
+                if (this.bytes[i] != bytes[offset + i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
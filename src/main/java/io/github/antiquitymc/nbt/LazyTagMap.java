@@ -0,0 +1,440 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A backing map for compound tags that keeps the encoded entries and decodes them on first access.
+ *
+ * <p>Only the keys and the offsets of the entries are decoded up front.
+ * Nested compounds are lazy as well and share the same byte array.
+ * As long as no entries are added or removed, {@link #write(DataOutput)} copies
+ * the encoded bytes of all entries that are untouched or immutable,
+ * and only re-encodes the containers and arrays that have been handed out.
+ *
+ * <p>Any operation that could change the set of entries, including obtaining a view,
+ * decodes all entries of this level into a regular map that is used from then on.
+ */
+final class LazyTagMap extends AbstractMap<String, Tag> {
+    private static final int MAX_LINEAR_LOOKUP_SIZE = 16;
+
+    private final byte[] bytes;
+    private final String[] keys;
+    private final byte[] types;
+    private final int[] entryStarts;
+    private final int[] valueStarts;
+    private final int[] valueEnds;
+    private final Tag[] decoded;
+    private final int end;
+    private final KeyCache keyCache;
+    private Map<String, Integer> lookup;
+    private Map<String, Tag> delegate;
+
+    private LazyTagMap(byte[] bytes, int start, KeyCache keyCache) throws IOException {
+        this.bytes = bytes;
+        this.keyCache = keyCache;
+
+        NbtReader reader = new NbtReader(bytes, start, bytes.length - start);
+        reader.setKeyCache(keyCache);
+        int size = 0;
+        String[] keys = new String[8];
+        byte[] types = new byte[8];
+        int[] entryStarts = new int[8];
+        int[] valueStarts = new int[8];
+        int[] valueEnds = new int[8];
+        int position = start;
+
+        while (true) {
+            byte typeId = reader.readByte();
+
+            if (typeId == TagType.Standard.END.getId()) {
+                break;
+            }
+
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                types = Arrays.copyOf(types, size * 2);
+                entryStarts = Arrays.copyOf(entryStarts, size * 2);
+                valueStarts = Arrays.copyOf(valueStarts, size * 2);
+                valueEnds = Arrays.copyOf(valueEnds, size * 2);
+            }
+
+            TagType.Standard type = TagType.Standard.byId(typeId);
+            keys[size] = reader.readKey();
+            types[size] = typeId;
+            entryStarts[size] = position;
+            valueStarts[size] = start + reader.position();
+            TagSkipper.skip(type, reader);
+            position = start + reader.position();
+            valueEnds[size] = position;
+            size++;
+        }
+
+        this.keys = Arrays.copyOf(keys, size);
+        this.types = Arrays.copyOf(types, size);
+        this.entryStarts = Arrays.copyOf(entryStarts, size);
+        this.valueStarts = Arrays.copyOf(valueStarts, size);
+        this.valueEnds = Arrays.copyOf(valueEnds, size);
+        this.decoded = new Tag[size];
+        this.end = start + reader.position();
+    }
+
+    /**
+     * Reads the payload of a compound tag, keeping its encoded bytes.
+     *
+     * @param input the data input
+     * @return the lazy map
+     */
+    static LazyTagMap read(DataInput input) throws IOException {
+        Recorder recorder = new Recorder(input);
+        TagSkipper.skipCompound(recorder);
+        KeyCache keyCache = input instanceof NbtReader ? ((NbtReader) input).getKeyCache() : null;
+        return new LazyTagMap(recorder.writer.toByteArray(), 0, keyCache);
+    }
+
+    private int indexOf(Object key) {
+        if (keys.length <= MAX_LINEAR_LOOKUP_SIZE) {
+            // Search backwards so that later duplicates win, like when reading into a regular map
+            for (int i = keys.length - 1; i >= 0; i--) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        if (lookup == null) {
+            lookup = new HashMap<>(keys.length * 2);
+
+            for (int i = 0; i < keys.length; i++) {
+                lookup.put(keys[i], i);
+            }
+        }
+
+        Integer index = lookup.get(key);
+        return index != null ? index : -1;
+    }
+
+    private Tag decode(int index) {
+        Tag tag = decoded[index];
+
+        if (tag == null) {
+            TagType.Standard type = TagType.Standard.byId(types[index]);
+            int start = valueStarts[index];
+
+            try {
+                if (type == TagType.Standard.COMPOUND) {
+                    tag = new CompoundTag(new LazyTagMap(bytes, start, keyCache));
+                } else {
+                    NbtReader reader = new NbtReader(bytes, start, valueEnds[index] - start);
+                    reader.setKeyCache(keyCache);
+                    tag = type.read(reader);
+                }
+            } catch (IOException e) {
+                // The bytes were already validated when the index was built
+                throw new IllegalStateException("Could not decode lazy tag " + keys[index], e);
+            }
+
+            decoded[index] = tag;
+        }
+
+        return tag;
+    }
+
+    private Map<String, Tag> delegate() {
+        if (delegate == null) {
+            delegate = new LinkedHashMap<>(keys.length * 2);
+
+            for (int i = 0; i < keys.length; i++) {
+                delegate.put(keys[i], decode(i));
+            }
+        }
+
+        return delegate;
+    }
+
+    /**
+     * Writes this map as the payload of a compound tag, reusing the encoded bytes where possible.
+     *
+     * @param output the data output
+     * @return true if written, false if the entries have changed and this map must be written as a regular map
+     */
+    boolean write(DataOutput output) throws IOException {
+        if (delegate != null && !isUnchanged()) {
+            return false;
+        }
+
+        boolean untouched = true;
+        for (Tag tag : decoded) {
+            if (tag != null) {
+                untouched = false;
+                break;
+            }
+        }
+
+        if (untouched) {
+            // The entries and the end tag are stored contiguously
+            int start = entryStarts.length > 0 ? entryStarts[0] : end - 1;
+            output.write(bytes, start, end - start);
+            return true;
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            Tag tag = decoded[i];
+
+            if (tag == null || isImmutable(types[i])) {
+                output.write(bytes, entryStarts[i], valueEnds[i] - entryStarts[i]);
+            } else {
+                output.write(bytes, entryStarts[i], valueStarts[i] - entryStarts[i]);
+                tag.write(output);
+            }
+        }
+
+        output.writeByte(TagType.Standard.END.getId());
+        return true;
+    }
+
+    /**
+     * Computes the serialized size of this map as the payload of a compound tag without decoding it.
+     *
+     * @return the size in bytes, or -1 if the entries have changed and the size must be computed from the entries
+     */
+    long serializedSize() {
+        if (delegate != null && !isUnchanged()) {
+            return -1;
+        }
+
+        // Includes the end tag
+        long size = Byte.BYTES;
+
+        for (int i = 0; i < keys.length; i++) {
+            Tag tag = decoded[i];
+
+            if (tag == null || isImmutable(types[i])) {
+                size += valueEnds[i] - entryStarts[i];
+            } else {
+                size += valueStarts[i] - entryStarts[i] + tag.serializedSize();
+            }
+        }
+
+        return size;
+    }
+
+    private boolean isUnchanged() {
+        if (delegate.size() != keys.length) {
+            return false;
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            if (delegate.get(keys[i]) != decoded[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isImmutable(byte typeId) {
+        switch (TagType.Standard.byId(typeId)) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+            case STRING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public int size() {
+        return delegate != null ? delegate.size() : lookupSize();
+    }
+
+    private int lookupSize() {
+        if (keys.length <= MAX_LINEAR_LOOKUP_SIZE) {
+            // Duplicate keys are rare enough to check for them on demand
+            int size = keys.length;
+
+            for (int i = 0; i < keys.length; i++) {
+                if (indexOf(keys[i]) != i) {
+                    size--;
+                }
+            }
+
+            return size;
+        }
+
+        indexOf(null);
+        return lookup.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate != null ? delegate.isEmpty() : keys.length == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return delegate != null ? delegate.containsKey(key) : indexOf(key) >= 0;
+    }
+
+    @Override
+    public Tag get(Object key) {
+        if (delegate != null) {
+            return delegate.get(key);
+        }
+
+        int index = indexOf(key);
+        return index >= 0 ? decode(index) : null;
+    }
+
+    @Override
+    public Tag put(String key, Tag value) {
+        return delegate().put(key, value);
+    }
+
+    @Override
+    public Tag remove(Object key) {
+        return delegate().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate().clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return delegate().keySet();
+    }
+
+    @Override
+    public Collection<Tag> values() {
+        return delegate().values();
+    }
+
+    @Override
+    public Set<Entry<String, Tag>> entrySet() {
+        return delegate().entrySet();
+    }
+
+    /**
+     * A data input that copies everything it reads, including skipped bytes.
+     */
+    private static final class Recorder implements DataInput {
+        private final DataInput input;
+        private final NbtWriter writer = new NbtWriter();
+
+        Recorder(DataInput input) {
+            this.input = input;
+        }
+
+        @Override
+        public void readFully(byte[] b) throws IOException {
+            readFully(b, 0, b.length);
+        }
+
+        @Override
+        public void readFully(byte[] b, int off, int len) throws IOException {
+            input.readFully(b, off, len);
+            writer.write(b, off, len);
+        }
+
+        @Override
+        public int skipBytes(int n) throws IOException {
+            byte[] chunk = new byte[Math.min(n, 8192)];
+
+            for (int remaining = n; remaining > 0; ) {
+                int count = Math.min(remaining, chunk.length);
+                readFully(chunk, 0, count);
+                remaining -= count;
+            }
+
+            return n;
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            byte v = input.readByte();
+            writer.writeByte(v);
+            return v;
+        }
+
+        @Override
+        public int readUnsignedByte() throws IOException {
+            return readByte() & 0xFF;
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            short v = input.readShort();
+            writer.writeShort(v);
+            return v;
+        }
+
+        @Override
+        public int readUnsignedShort() throws IOException {
+            return readShort() & 0xFFFF;
+        }
+
+        @Override
+        public char readChar() throws IOException {
+            return (char) readShort();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            int v = input.readInt();
+            writer.writeInt(v);
+            return v;
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            long v = input.readLong();
+            writer.writeLong(v);
+            return v;
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            return Float.intBitsToFloat(readInt());
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        @Override
+        public String readLine() {
+            // Skipping tags never reads lines, and a line terminator can't be recorded exactly
+            // without reading one byte ahead
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String readUTF() throws IOException {
+            return DataInputStream.readUTF(this);
+        }
+    }
+}
@@ -3,11 +3,11 @@ package io.github.antiquitymc.nbt;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -17,9 +17,11 @@ public final class ListTag<T extends Tag> implements Tag, List<T> {
 
     /**
      * Constructs a mutable list tag.
+     *
+     * <p>Lists of ints, longs, floats and doubles store their values in primitive arrays.
      */
     public ListTag(TagType elementType) {
-        this(elementType, new ArrayList<>());
+        this(elementType, newBackingList(elementType));
     }
 
     /**
@@ -64,7 +66,21 @@ public final class ListTag<T extends Tag> implements Tag, List<T> {
         return tags.get(0).getType();
     }
 
+    @SuppressWarnings("unchecked")
+    private static <T extends Tag> List<T> newBackingList(TagType elementType) {
+        if (PrimitiveTagList.supports(elementType)) {
+            return (List<T>) PrimitiveTagList.create(elementType);
+        }
+
+        return new ObjectTagList<>();
+    }
+
     private void checkTypes() {
+        // Primitive lists can only contain their own element type, and persistent lists are checked on creation
+        if (tags instanceof PrimitiveTagList || tags instanceof PersistentTagList) {
+            return;
+        }
+
         for (T tag : tags) {
             if (tag.getType() != elementType) {
                 throw new IllegalArgumentException("Tag " + tag + " has an invalid type! Excepted: " + elementType + ", found: " + tag.getType());
@@ -79,17 +95,91 @@ public final class ListTag<T extends Tag> implements Tag, List<T> {
         output.writeByte(elementType.getStandardEquivalent().getId());
         output.writeInt(tags.size());
 
+        if (tags instanceof PrimitiveTagList) {
+            ((PrimitiveTagList<?>) tags).write(output);
+            return;
+        }
+
         for (T tag : tags) {
             tag.write(output);
         }
     }
 
+    @Override
+    public long serializedSize() {
+        // The element type and the length
+        long size = Byte.BYTES + Integer.BYTES;
+
+        if (tags instanceof PrimitiveTagList) {
+            return size + (long) tags.size() * ((PrimitiveTagList<?>) tags).elementSize();
+        }
+
+        for (T tag : tags) {
+            size += tag.serializedSize();
+        }
+
+        return size;
+    }
+
+    /**
+     * Gets the change tracker of the backing list, creating it if requested.
+     *
+     * @param create whether to create the tracker
+     * @return the tracker, or null if the backing list can't be tracked or has no tracker yet
+     */
+    ChangeTracker tracker(boolean create) {
+        if (tags instanceof ObjectTagList) {
+            return ((ObjectTagList<?>) tags).tracker(create);
+        } else if (tags instanceof PrimitiveTagList) {
+            return ((PrimitiveTagList<?>) tags).tracker(create);
+        }
+
+        return null;
+    }
+
+    /**
+     * Encodes this list into a cached encoding. Only lists with a tracker are encoded this way.
+     */
+    void encode(CachedEncoding.Builder builder, int previousStart) throws IOException {
+        NbtWriter writer = builder.writer();
+
+        if (tags instanceof PrimitiveTagList) {
+            // Numeric elements can't change on their own
+            write(writer);
+            return;
+        }
+
+        checkTypes();
+        int start = writer.size();
+        ChangeTracker tracker = tracker(false);
+
+        writer.writeByte(elementType.getStandardEquivalent().getId());
+        writer.writeInt(tags.size());
+
+        for (T tag : tags) {
+            builder.value(tag, tracker, previousStart, start);
+        }
+    }
+
     public static ListTag<?> read(DataInput input) throws IOException {
         byte elementTypeId = input.readByte();
         TagType elementType = TagType.Standard.byId(elementTypeId);
 
         int length = input.readInt();
-        ArrayList<Tag> tags = new ArrayList<>(length);
+        return readElements(elementType, length, input);
+    }
+
+    /**
+     * Reads the elements of a list tag after its element type and length.
+     *
+     * <p>Numeric elements are read into a primitive backing list, like {@link #read(DataInput)} does.
+     */
+    static ListTag<?> readElements(TagType elementType, int length, DataInput input) throws IOException {
+        if (PrimitiveTagList.supports(elementType)) {
+            return new ListTag<>(elementType, PrimitiveTagList.read(elementType, input, length));
+        }
+
+        ObjectTagList<Tag> tags = new ObjectTagList<>(length);
 
         for (int i = 0; i < length; i++) {
             tags.add(elementType.read(input));
@@ -98,6 +188,190 @@ public final class ListTag<T extends Tag> implements Tag, List<T> {
         return new ListTag<>(elementType, tags);
     }
 
+    /**
+     * Gets the value of an int element.
+     *
+     * @param index the element index
+     * @return the value
+     * @throws ClassCastException if this is not a list of ints
+     */
+    public int getInt(int index) {
+        if (tags instanceof PrimitiveTagList.IntList) {
+            return ((PrimitiveTagList.IntList) tags).getInt(index);
+        }
+
+        return ((IntTag) tags.get(index)).getValue();
+    }
+
+    /**
+     * Gets the value of a long element.
+     *
+     * @param index the element index
+     * @return the value
+     * @throws ClassCastException if this is not a list of longs
+     */
+    public long getLong(int index) {
+        if (tags instanceof PrimitiveTagList.LongList) {
+            return ((PrimitiveTagList.LongList) tags).getLong(index);
+        }
+
+        return ((LongTag) tags.get(index)).getValue();
+    }
+
+    /**
+     * Gets the value of a float element.
+     *
+     * @param index the element index
+     * @return the value
+     * @throws ClassCastException if this is not a list of floats
+     */
+    public float getFloat(int index) {
+        if (tags instanceof PrimitiveTagList.FloatList) {
+            return ((PrimitiveTagList.FloatList) tags).getFloat(index);
+        }
+
+        return ((FloatTag) tags.get(index)).getValue();
+    }
+
+    /**
+     * Gets the value of a double element.
+     *
+     * @param index the element index
+     * @return the value
+     * @throws ClassCastException if this is not a list of doubles
+     */
+    public double getDouble(int index) {
+        if (tags instanceof PrimitiveTagList.DoubleList) {
+            return ((PrimitiveTagList.DoubleList) tags).getDouble(index);
+        }
+
+        return ((DoubleTag) tags.get(index)).getValue();
+    }
+
+    /**
+     * Creates a deep copy of this list.
+     *
+     * <p>Lists of ints, longs, floats and doubles share their values with the copy until either of them
+     * is changed. Persistent lists share their structure with the copy, and only the paths to
+     * array tags are copied, so a persistent list without arrays is returned as it is.
+     * Other lists are copied into a new mutable list with copies of their elements.
+     *
+     * @return the copy
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public ListTag<T> copy() {
+        if (tags instanceof PrimitiveTagList) {
+            return new ListTag<>(elementType, (List<T>) ((PrimitiveTagList<?>) tags).copy());
+        } else if (isPersistent()) {
+            ListTag<T> copy = this;
+
+            for (int i = 0; i < tags.size(); i++) {
+                T element = tags.get(i);
+                // Tags are copied to tags of the same class
+                T value = (T) element.copy();
+
+                if (value != element) {
+                    copy = copy.with(i, value);
+                }
+            }
+
+            return copy;
+        }
+
+        ObjectTagList<T> copy = new ObjectTagList<>(tags.size());
+        for (T tag : tags) {
+            // Tags are copied to tags of the same class
+            copy.add((T) tag.copy());
+        }
+
+        return new ListTag<>(elementType, copy);
+    }
+
+    /**
+     * Checks if this list is persistent. Persistent lists are immutable, and they share their structure
+     * with the lists derived from them with {@link #with}, {@link #withAdded} and {@link #withoutLast}.
+     *
+     * @return true if persistent
+     */
+    public boolean isPersistent() {
+        return tags instanceof PersistentTagList;
+    }
+
+    /**
+     * Gets a persistent version of this list.
+     *
+     * <p>A persistent list is returned as is. Otherwise the elements are copied into a new persistent list,
+     * and nested compounds and lists are converted as well.
+     *
+     * @return the persistent list
+     * @see CompoundTag#toPersistent()
+     */
+    @SuppressWarnings("unchecked")
+    public ListTag<T> toPersistent() {
+        if (isPersistent()) {
+            return this;
+        }
+
+        PersistentTagList<T> list = PersistentTagList.empty();
+        for (T tag : tags) {
+            // Compounds and lists are converted to tags of the same class
+            list = list.withAdded((T) PersistentTagMap.toPersistent(tag));
+        }
+
+        return new ListTag<>(elementType, list);
+    }
+
+    /**
+     * Returns a persistent list with an element replaced. This list is not changed.
+     *
+     * <p>Only the arrays on the path to the element are copied. Lists that aren't persistent are
+     * {@linkplain #toPersistent() converted} first, and so are compound and list elements.
+     *
+     * @param index   the index of the element
+     * @param element the new element
+     * @return the new list
+     */
+    @SuppressWarnings("unchecked")
+    public ListTag<T> with(int index, T element) {
+        checkType(element);
+        return new ListTag<>(elementType, persistentTags().with(index, (T) PersistentTagMap.toPersistent(element)));
+    }
+
+    /**
+     * Returns a persistent list with an element added to the end. This list is not changed.
+     *
+     * @param element the element
+     * @return the new list
+     * @see #with(int, Tag)
+     */
+    @SuppressWarnings("unchecked")
+    public ListTag<T> withAdded(T element) {
+        checkType(element);
+        return new ListTag<>(elementType, persistentTags().withAdded((T) PersistentTagMap.toPersistent(element)));
+    }
+
+    /**
+     * Returns a persistent list with the last element removed. This list is not changed.
+     *
+     * @return the new list
+     * @throws NoSuchElementException if this list is empty
+     * @see #with(int, Tag)
+     */
+    public ListTag<T> withoutLast() {
+        return new ListTag<>(elementType, persistentTags().withoutLast());
+    }
+
+    private PersistentTagList<T> persistentTags() {
+        return (PersistentTagList<T>) toPersistent().tags;
+    }
+
+    private void checkType(T element) {
+        if (element.getType() != elementType) {
+            throw new IllegalArgumentException("Tag " + element + " has an invalid type! Excepted: " + elementType + ", found: " + element.getType());
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
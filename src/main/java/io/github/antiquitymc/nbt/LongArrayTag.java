@@ -29,19 +29,29 @@ public final class LongArrayTag implements Tag {
     @Override
     public void write(DataOutput output) throws IOException {
         output.writeInt(value.length);
+        NbtWriter.writeLongs(output, value);
+    }
+
+    @Override
+    public long serializedSize() {
+        return Integer.BYTES + (long) value.length * Long.BYTES;
+    }
 
-        for (long l : value) {
-            output.writeLong(l);
-        }
+    /**
+     * Creates a copy of this tag with a copy of the backing array.
+     *
+     * @return the copy
+     */
+    @Override
+    public LongArrayTag copy() {
+        return new LongArrayTag(value.clone());
     }
 
     public static LongArrayTag read(DataInput input) throws IOException {
         int length = input.readInt();
         long[] value = new long[length];
 
-        for (int i = 0; i < length; i++) {
-            value[i] = input.readLong();
-        }
+        NbtReader.readLongs(input, value);
 
         return new LongArrayTag(value);
     }
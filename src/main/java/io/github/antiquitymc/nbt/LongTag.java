@@ -25,6 +25,11 @@ public final class LongTag implements Tag {
         output.writeLong(value);
     }
 
+    @Override
+    public long serializedSize() {
+        return Long.BYTES;
+    }
+
     public static LongTag read(DataInput input) throws IOException {
         return new LongTag(input.readLong());
     }
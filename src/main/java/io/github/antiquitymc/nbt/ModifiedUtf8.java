@@ -0,0 +1,210 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.UTFDataFormatException;
+
+/**
+ * Encodes and decodes strings in the modified UTF-8 format used by {@link java.io.DataInput#readUTF()}.
+ *
+ * <p>Runs of ASCII characters are copied between strings and byte arrays directly,
+ * using the {@code String} methods that convert bytes to characters without a charset.
+ */
+final class ModifiedUtf8 {
+    /**
+     * The maximum number of bytes in an encoded string, not counting the length prefix.
+     */
+    static final int MAX_ENCODED_LENGTH = 0xFFFF;
+
+    private ModifiedUtf8() {
+    }
+
+    /**
+     * Counts the leading bytes that encode ASCII characters on their own.
+     *
+     * @param bytes  the byte array
+     * @param offset the start of the encoded string
+     * @param length the number of encoded bytes
+     * @return the number of leading single-byte characters
+     */
+    static int countAscii(byte[] bytes, int offset, int length) {
+        int i = 0;
+
+        while (i < length && bytes[offset + i] >= 0) {
+            i++;
+        }
+
+        return i;
+    }
+
+    /**
+     * Decodes modified UTF-8 bytes into a string.
+     *
+     * @param bytes  the byte array
+     * @param offset the start of the encoded string
+     * @param length the number of encoded bytes
+     * @return the decoded string
+     * @throws UTFDataFormatException if the bytes are not valid modified UTF-8
+     */
+    static String decode(byte[] bytes, int offset, int length) throws UTFDataFormatException {
+        int ascii = countAscii(bytes, offset, length);
+
+        if (ascii == length) {
+            return decodeAscii(bytes, offset, length);
+        }
+
+        return decode(bytes, offset, length, ascii, new char[length]);
+    }
+
+    /**
+     * Decodes bytes that only contain ASCII characters.
+     */
+    @SuppressWarnings("deprecation")
+    static String decodeAscii(byte[] bytes, int offset, int length) {
+        // Copies the bytes as the low bytes of the characters without going through a charset
+        return new String(bytes, 0, offset, length);
+    }
+
+    /**
+     * Decodes modified UTF-8 bytes into a string using a scratch character array.
+     *
+     * @param bytes  the byte array
+     * @param offset the start of the encoded string
+     * @param length the number of encoded bytes
+     * @param ascii  the number of leading ASCII bytes, as returned by {@link #countAscii}
+     * @param chars  the scratch array, at least {@code length} long
+     * @return the decoded string
+     * @throws UTFDataFormatException if the bytes are not valid modified UTF-8
+     */
+    static String decode(byte[] bytes, int offset, int length, int ascii, char[] chars) throws UTFDataFormatException {
+        for (int i = 0; i < ascii; i++) {
+            chars[i] = (char) bytes[offset + i];
+        }
+
+        int count = ascii;
+        int end = offset + length;
+        int i = offset + ascii;
+
+        while (i < end) {
+            int c = bytes[i] & 0xFF;
+
+            switch (c >> 4) {
+                case 0:
+                case 1:
+                case 2:
+                case 3:
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                    // 0xxxxxxx
+                    i++;
+                    chars[count++] = (char) c;
+                    break;
+                case 12:
+                case 13: {
+                    // 110x xxxx 10xx xxxx
+                    if (i + 2 > end) {
+                        throw new UTFDataFormatException("malformed input: partial character at end");
+                    }
+
+                    int c2 = bytes[i + 1];
+                    if ((c2 & 0xC0) != 0x80) {
+                        throw new UTFDataFormatException("malformed input around byte " + (i + 1 - offset));
+                    }
+
+                    chars[count++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+                    i += 2;
+                    break;
+                }
+                case 14: {
+                    // 1110 xxxx 10xx xxxx 10xx xxxx
+                    if (i + 3 > end) {
+                        throw new UTFDataFormatException("malformed input: partial character at end");
+                    }
+
+                    int c2 = bytes[i + 1];
+                    int c3 = bytes[i + 2];
+                    if ((c2 & 0xC0) != 0x80 || (c3 & 0xC0) != 0x80) {
+                        throw new UTFDataFormatException("malformed input around byte " + (i + 2 - offset));
+                    }
+
+                    chars[count++] = (char) (((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+                    i += 3;
+                    break;
+                }
+                default:
+                    // 10xx xxxx, 1111 xxxx
+                    throw new UTFDataFormatException("malformed input around byte " + (i - offset));
+            }
+        }
+
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Computes the number of bytes needed to encode a string, not counting the length prefix.
+     *
+     * @param s the string
+     * @return the encoded length, which may exceed {@link #MAX_ENCODED_LENGTH}
+     */
+    static long encodedLength(String s) {
+        int length = s.length();
+        long encodedLength = length;
+
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+
+            if (c >= 0x80 || c == 0) {
+                encodedLength += c >= 0x800 ? 2 : 1;
+            }
+        }
+
+        return encodedLength;
+    }
+
+    /**
+     * Computes the number of bytes needed to write a string, including the length prefix.
+     *
+     * @param s the string
+     * @return the serialized size
+     */
+    static long serializedSize(String s) {
+        return Short.BYTES + encodedLength(s);
+    }
+
+    /**
+     * Encodes a string into a byte array, not including the length prefix.
+     *
+     * @param s             the string
+     * @param encodedLength the encoded length, as returned by {@link #encodedLength}
+     * @param bytes         the byte array, with room for {@code encodedLength} bytes
+     * @param offset        the start of the encoded string in the array
+     * @return the offset after the encoded string
+     */
+    @SuppressWarnings("deprecation")
+    static int encode(String s, int encodedLength, byte[] bytes, int offset) {
+        int length = s.length();
+
+        if (encodedLength == length) {
+            // Only ASCII characters, so the low bytes of the characters are the encoding
+            s.getBytes(0, length, bytes, offset);
+            return offset + length;
+        }
+
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+
+            if (c != 0 && c < 0x80) {
+                bytes[offset++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[offset++] = (byte) (0xC0 | (c >> 6));
+                bytes[offset++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                bytes[offset++] = (byte) (0xE0 | (c >> 12));
+                bytes[offset++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[offset++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        return offset;
+    }
+}
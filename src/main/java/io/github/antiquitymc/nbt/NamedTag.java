@@ -12,8 +12,11 @@ public final class NamedTag {
     public NamedTag(String name, Tag tag) {
         this.name = Objects.requireNonNull(name, "name");
         this.tag = Objects.requireNonNull(tag, "tag");
+        checkNotEnd(tag.getType().getStandardEquivalent());
+    }
 
-        if (tag.getType().getStandardEquivalent() == TagType.Standard.END) {
+    private static void checkNotEnd(TagType.Standard type) {
+        if (type == TagType.Standard.END) {
             throw new IllegalArgumentException("End tags cannot be named!");
         }
     }
@@ -27,11 +30,45 @@ public final class NamedTag {
     }
 
     public void write(DataOutput output) throws IOException {
-        output.writeByte(tag.getType().getStandardEquivalent().getId());
-        output.writeUTF(name);
+        write(output, name, tag);
+    }
+
+    /**
+     * Writes a name-tag pair without wrapping it in a {@code NamedTag}.
+     */
+    static void write(DataOutput output, String name, Tag tag) throws IOException {
+        writeHeader(output, name, tag);
         tag.write(output);
     }
 
+    /**
+     * Writes the type and the name of a name-tag pair, without the tag itself.
+     */
+    static void writeHeader(DataOutput output, String name, Tag tag) throws IOException {
+        TagType.Standard type = tag.getType().getStandardEquivalent();
+        checkNotEnd(type);
+
+        output.writeByte(type.getId());
+        output.writeUTF(name);
+    }
+
+    /**
+     * Computes the number of bytes that {@link #write(DataOutput)} writes.
+     *
+     * @return the size in bytes
+     * @see Tag#serializedSize()
+     */
+    public long serializedSize() {
+        return serializedSize(name, tag);
+    }
+
+    /**
+     * Computes the serialized size of a name-tag pair.
+     */
+    static long serializedSize(String name, Tag tag) {
+        return Byte.BYTES + ModifiedUtf8.serializedSize(name) + tag.serializedSize();
+    }
+
     public static NamedTag read(DataInput input) throws IOException {
         byte typeId = input.readByte();
         return read(typeId, input);
@@ -39,11 +76,25 @@ public final class NamedTag {
 
     public static NamedTag read(byte typeId, DataInput input) throws IOException {
         TagType type = TagType.Standard.byId(typeId);
-        String name = input.readUTF();
+        String name = NbtReader.readKey(input);
         Tag tag = type.read(input);
         return new NamedTag(name, tag);
     }
 
+    /**
+     * Reads a named tag. If the tag is a compound, it decodes its entries on first access.
+     *
+     * @param input the data input
+     * @return the read tag
+     * @see CompoundTag#readLazy(DataInput)
+     */
+    public static NamedTag readLazy(DataInput input) throws IOException {
+        TagType type = TagType.Standard.byId(input.readByte());
+        String name = NbtReader.readKey(input);
+        Tag tag = type == TagType.Standard.COMPOUND ? CompoundTag.readLazy(input) : type.read(input);
+        return new NamedTag(name, tag);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,307 @@
+package io.github.antiquitymc.nbt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes structural patches between compound and list tags, and applies them.
+ *
+ * <p>Patches are compound tags themselves, so they can be written and read like any other NBT.
+ * A compound patch contains:
+ * <ul>
+ *     <li>{@code Set}: a compound of the entries that were added or replaced as a whole</li>
+ *     <li>{@code Remove}: a list of the keys that were removed</li>
+ *     <li>{@code Patch}: a compound of patches for the nested compounds and lists that changed partially</li>
+ * </ul>
+ *
+ * <p>A list patch contains:
+ * <ul>
+ *     <li>{@code Splices}: a list of compounds that each replace {@code Removed} elements starting at
+ *     {@code Start} with the list of {@code Elements}, in ascending order of their start indices</li>
+ *     <li>{@code Patches}: a list of compounds with a {@code Patch} for the nested compound or list
+ *     at each {@code Index}</li>
+ * </ul>
+ *
+ * <p>Empty parts are left out, so the patch between two equal tags is an empty compound.
+ * Nested compounds and lists are only patched if the patch is smaller than their new value.
+ * Patches share the tags of the new values, and applying a patch inserts copies of them.
+ */
+public final class NbtDiff {
+    private static final String SET = "Set";
+    private static final String REMOVE = "Remove";
+    private static final String PATCH = "Patch";
+    private static final String SPLICES = "Splices";
+    private static final String PATCHES = "Patches";
+    private static final String START = "Start";
+    private static final String REMOVED = "Removed";
+    private static final String ELEMENTS = "Elements";
+    private static final String INDEX = "Index";
+
+    private NbtDiff() {
+    }
+
+    /**
+     * Computes a patch that turns one compound into another.
+     *
+     * @param from the old compound
+     * @param to   the new compound
+     * @return the patch
+     */
+    public static CompoundTag diff(CompoundTag from, CompoundTag to) {
+        CompoundTag set = new CompoundTag();
+        ListTag<StringTag> remove = new ListTag<>(TagType.Standard.STRING);
+        CompoundTag patches = new CompoundTag();
+
+        for (Map.Entry<String, Tag> entry : to.entrySet()) {
+            String key = entry.getKey();
+            Tag value = entry.getValue();
+            Tag old = from.get(key);
+
+            if (value.equals(old)) {
+                continue;
+            }
+
+            CompoundTag patch = old != null ? diffValues(old, value) : null;
+
+            if (patch != null) {
+                patches.put(key, patch);
+            } else {
+                set.put(key, value);
+            }
+        }
+
+        for (String key : from.keySet()) {
+            if (!to.containsKey(key)) {
+                remove.add(new StringTag(key));
+            }
+        }
+
+        CompoundTag patch = new CompoundTag();
+        putIfNotEmpty(patch, SET, set);
+        putIfNotEmpty(patch, REMOVE, remove);
+        putIfNotEmpty(patch, PATCH, patches);
+        return patch;
+    }
+
+    /**
+     * Computes a patch that turns one list into another.
+     *
+     * <p>Elements that were inserted or removed in one place are found by skipping the elements that are
+     * equal at the start and the end of the lists. Otherwise, runs of changed elements become separate splices.
+     *
+     * @param from the old list
+     * @param to   the new list
+     * @return the patch
+     * @throws IllegalArgumentException if the lists have different element types
+     */
+    public static CompoundTag diff(ListTag<?> from, ListTag<?> to) {
+        if (from.getElementType() != to.getElementType()) {
+            throw new IllegalArgumentException("Cannot diff lists of " + from.getElementType().getName() + " and " + to.getElementType().getName());
+        }
+
+        int oldSize = from.size();
+        int newSize = to.size();
+        int minSize = Math.min(oldSize, newSize);
+
+        int prefix = 0;
+        while (prefix < minSize && from.get(prefix).equals(to.get(prefix))) {
+            prefix++;
+        }
+
+        int suffix = 0;
+        while (suffix < minSize - prefix && from.get(oldSize - 1 - suffix).equals(to.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+
+        int oldEnd = oldSize - suffix;
+        int newEnd = newSize - suffix;
+        ListTag<CompoundTag> splices = new ListTag<>(TagType.Standard.COMPOUND);
+        ListTag<CompoundTag> patches = new ListTag<>(TagType.Standard.COMPOUND);
+
+        if (oldEnd != newEnd) {
+            splices.add(splice(to, prefix, oldEnd - prefix, newEnd));
+        } else {
+            // The same number of elements changed in place
+            int runStart = -1;
+
+            for (int i = prefix; i <= newEnd; i++) {
+                boolean replaced = false;
+
+                if (i < newEnd && !from.get(i).equals(to.get(i))) {
+                    CompoundTag patch = diffValues(from.get(i), to.get(i));
+
+                    if (patch != null) {
+                        CompoundTag indexed = new CompoundTag();
+                        indexed.putInt(INDEX, i);
+                        indexed.put(PATCH, patch);
+                        patches.add(indexed);
+                    } else {
+                        replaced = true;
+                    }
+                }
+
+                if (replaced && runStart < 0) {
+                    runStart = i;
+                } else if (!replaced && runStart >= 0) {
+                    splices.add(splice(to, runStart, i - runStart, i));
+                    runStart = -1;
+                }
+            }
+        }
+
+        CompoundTag patch = new CompoundTag();
+        putIfNotEmpty(patch, SPLICES, splices);
+        putIfNotEmpty(patch, PATCHES, patches);
+        return patch;
+    }
+
+    private static CompoundTag splice(ListTag<?> to, int start, int removed, int end) {
+        ListTag<Tag> elements = new ListTag<>(to.getElementType());
+        elements.addAll(to.subList(start, end));
+
+        CompoundTag splice = new CompoundTag();
+        splice.putInt(START, start);
+        splice.putInt(REMOVED, removed);
+        splice.put(ELEMENTS, elements);
+        return splice;
+    }
+
+    /**
+     * Computes a patch between two nested values if it's smaller than the new value.
+     *
+     * @return the patch, or null if the value should be replaced
+     */
+    private static CompoundTag diffValues(Tag from, Tag to) {
+        CompoundTag patch;
+
+        if (from instanceof CompoundTag && to instanceof CompoundTag) {
+            patch = diff((CompoundTag) from, (CompoundTag) to);
+        } else if (from instanceof ListTag && to instanceof ListTag
+            && ((ListTag<?>) from).getElementType() == ((ListTag<?>) to).getElementType()) {
+            patch = diff((ListTag<?>) from, (ListTag<?>) to);
+        } else {
+            return null;
+        }
+
+        return patch.serializedSize() < to.serializedSize() ? patch : null;
+    }
+
+    private static void putIfNotEmpty(CompoundTag patch, String key, CompoundTag value) {
+        if (!value.isEmpty()) {
+            patch.put(key, value);
+        }
+    }
+
+    private static void putIfNotEmpty(CompoundTag patch, String key, ListTag<?> value) {
+        if (!value.isEmpty()) {
+            patch.put(key, value);
+        }
+    }
+
+    /**
+     * Applies a patch to a compound in place.
+     *
+     * <p>To keep the original compound, apply the patch to a {@linkplain CompoundTag#copy() copy}.
+     *
+     * @param target the compound to change
+     * @param patch  the patch
+     * @throws IllegalArgumentException if the patch does not match the compound
+     */
+    public static void apply(CompoundTag target, CompoundTag patch) {
+        ListTag<?> remove = (ListTag<?>) patch.get(REMOVE);
+        if (remove != null) {
+            for (Tag key : remove) {
+                target.remove(((StringTag) key).getValue());
+            }
+        }
+
+        CompoundTag set = patch.getSubTag(SET);
+        if (set != null) {
+            for (Map.Entry<String, Tag> entry : set.entrySet()) {
+                target.put(entry.getKey(), entry.getValue().copy());
+            }
+        }
+
+        CompoundTag patches = patch.getSubTag(PATCH);
+        if (patches != null) {
+            for (Map.Entry<String, Tag> entry : patches.entrySet()) {
+                Tag value = target.get(entry.getKey());
+
+                if (value == null) {
+                    throw new IllegalArgumentException("Cannot patch missing key " + entry.getKey());
+                }
+
+                applyValue(value, (CompoundTag) entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Applies a patch to a list in place.
+     *
+     * <p>To keep the original list, apply the patch to a {@linkplain ListTag#copy() copy}.
+     *
+     * @param target the list to change
+     * @param patch  the patch
+     * @throws IllegalArgumentException if the patch does not match the list
+     */
+    @SuppressWarnings("unchecked")
+    public static void apply(ListTag<?> target, CompoundTag patch) {
+        // The element types are checked when elements are added
+        ListTag<Tag> list = (ListTag<Tag>) target;
+        ListTag<?> splices = (ListTag<?>) patch.get(SPLICES);
+
+        if (splices != null) {
+            // In reverse, so that the start indices of the remaining splices stay valid
+            for (int i = splices.size() - 1; i >= 0; i--) {
+                CompoundTag splice = (CompoundTag) splices.get(i);
+                int start = splice.getInt(START);
+                int removed = splice.getInt(REMOVED);
+                ListTag<?> elements = (ListTag<?>) splice.get(ELEMENTS);
+
+                if (start < 0 || removed < 0 || start + removed > list.size()) {
+                    throw new IllegalArgumentException("Splice out of bounds: " + start + " + " + removed + ", size: " + list.size());
+                }
+
+                if (removed == elements.size()) {
+                    for (int j = 0; j < removed; j++) {
+                        list.set(start + j, elements.get(j).copy());
+                    }
+                } else {
+                    List<Tag> copies = new ArrayList<>(elements.size());
+                    for (Tag element : elements) {
+                        copies.add(element.copy());
+                    }
+
+                    list.subList(start, start + removed).clear();
+                    list.addAll(start, copies);
+                }
+            }
+        }
+
+        ListTag<?> patches = (ListTag<?>) patch.get(PATCHES);
+        if (patches != null) {
+            for (Tag tag : patches) {
+                CompoundTag indexed = (CompoundTag) tag;
+                int index = indexed.getInt(INDEX);
+
+                if (index < 0 || index >= list.size()) {
+                    throw new IllegalArgumentException("Cannot patch missing index " + index + ", size: " + list.size());
+                }
+
+                applyValue(list.get(index), indexed.getSubTag(PATCH));
+            }
+        }
+    }
+
+    private static void applyValue(Tag value, CompoundTag patch) {
+        if (value instanceof CompoundTag) {
+            apply((CompoundTag) value, patch);
+        } else if (value instanceof ListTag) {
+            apply((ListTag<?>) value, patch);
+        } else {
+            throw new IllegalArgumentException("Cannot patch a tag of type " + value.getType().getName());
+        }
+    }
+}
@@ -1,33 +1,378 @@
 package io.github.antiquitymc.nbt;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- * Reads and writes {@linkplain NamedTag named tags} from {@link InputStream} and to {@link OutputStream}.
+ * Reads and writes {@linkplain NamedTag named tags} from {@link InputStream} and to {@link OutputStream},
+ * either uncompressed or with a {@link Compression}. Named tags can also be read from and written to files
+ * directly, and written to channels.
  */
 public final class NbtIo {
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final long MAP_THRESHOLD = 64 * 1024;
+
     private NbtIo() {
     }
 
+    /**
+     * Reads a named tag from an uncompressed input stream.
+     *
+     * <p>The stream is decoded through an {@link NbtReader}, which may read ahead past the end of the tag.
+     *
+     * @param in the input stream
+     * @return the read tag
+     */
     public static NamedTag read(InputStream in) throws IOException {
-        return NamedTag.read(new DataInputStream(in));
+        return NamedTag.read(new NbtReader(in));
     }
 
     public static NamedTag readGzipped(InputStream in) throws IOException {
-        return read(new GZIPInputStream(in));
+        return read(in, Compression.Standard.GZIP);
+    }
+
+    /**
+     * Reads a named tag from a compressed input stream.
+     *
+     * @param in          the input stream
+     * @param compression the compression of the stream
+     * @return the read tag
+     */
+    public static NamedTag read(InputStream in, Compression compression) throws IOException {
+        try (InputStream decompressed = decompress(in, compression)) {
+            return read(decompressed);
+        }
+    }
+
+    /**
+     * Wraps an input stream for decompression so that the decompressing stream can be closed
+     * to release its resources without closing the input stream.
+     */
+    private static InputStream decompress(InputStream in, Compression compression) throws IOException {
+        return compression.decompress(new UnclosableInputStream(in));
+    }
+
+    /**
+     * Reads a named tag from an input stream that is either uncompressed or compressed in a
+     * {@linkplain Compression.Standard standard format}, which is detected from its first bytes.
+     *
+     * @param in the input stream
+     * @return the read tag
+     * @see Compression.Standard#detect(byte[], int, int)
+     */
+    public static NamedTag readDetected(InputStream in) throws IOException {
+        InputStream buffered = in.markSupported() ? in : new BufferedInputStream(in);
+        byte[] magic = new byte[Compression.Standard.MAGIC_LENGTH];
+        buffered.mark(magic.length);
+        int length = 0;
+
+        while (length < magic.length) {
+            int read = buffered.read(magic, length, magic.length - length);
+
+            if (read < 0) {
+                break;
+            }
+
+            length += read;
+        }
+
+        buffered.reset();
+        return read(buffered, Compression.Standard.detect(magic, 0, length));
+    }
+
+    /**
+     * Reads a named tag from a file that is either uncompressed or compressed in a
+     * {@linkplain Compression.Standard standard format}.
+     *
+     * <p>Uncompressed files are decoded directly from memory: large files are memory-mapped,
+     * and small files are read with a single call. Compressed files are detected from their first bytes
+     * and streamed from the file channel through a large buffer.
+     *
+     * <p>A memory-mapped file stays mapped until the mapping is garbage collected,
+     * which on some platforms prevents the file from being replaced or deleted until then.
+     *
+     * @param path the path to the file
+     * @return the read tag
+     */
+    public static NamedTag read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            Compression compression = detect(channel, size);
+
+            if (compression != Compression.Standard.NONE) {
+                InputStream in = new BufferedInputStream(Channels.newInputStream(channel), STREAM_BUFFER_SIZE);
+
+                try (InputStream decompressed = compression.decompress(in)) {
+                    return NamedTag.read(new NbtReader(decompressed, STREAM_BUFFER_SIZE));
+                }
+            } else if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large: " + size + " bytes");
+            } else if (size < MAP_THRESHOLD) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                readFully(channel, buffer);
+                ((Buffer) buffer).flip();
+                return NamedTag.read(new NbtReader(buffer));
+            } else {
+                return NamedTag.read(new NbtReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)));
+            }
+        }
+    }
+
+    /**
+     * Reads named tags from many files in parallel on the {@linkplain ForkJoinPool#commonPool() common pool}.
+     *
+     * @param paths the paths to the files
+     * @return the futures of the read tags
+     * @see #readAll(Collection, Executor)
+     */
+    public static List<CompletableFuture<NamedTag>> readAll(Collection<? extends Path> paths) {
+        return readAll(paths, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads named tags from many files in parallel, with one task per file.
+     * Each file is read like {@link #read(Path)}, so decompression also happens in parallel.
+     *
+     * <p>The returned futures are in the same order as the paths. If a file can't be read,
+     * only its future completes exceptionally, with the original exception.
+     *
+     * @param paths    the paths to the files
+     * @param executor the executor that runs the reads
+     * @return the futures of the read tags
+     */
+    public static List<CompletableFuture<NamedTag>> readAll(Collection<? extends Path> paths, Executor executor) {
+        List<CompletableFuture<NamedTag>> futures = new ArrayList<>(paths.size());
+
+        for (Path path : paths) {
+            CompletableFuture<NamedTag> future = new CompletableFuture<>();
+            futures.add(future);
+
+            executor.execute(() -> {
+                try {
+                    future.complete(read(path));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        }
+
+        return futures;
+    }
+
+    private static Compression detect(FileChannel channel, long size) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate((int) Math.min(size, Compression.Standard.MAGIC_LENGTH));
+        readFully(channel, magic);
+        return Compression.Standard.detect(magic.array(), 0, magic.capacity());
+    }
+
+    /**
+     * Fills the buffer with positional reads starting at the beginning of the file.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * Reads a named tag from an uncompressed input stream, sharing compound key strings through a cache.
+     *
+     * @param in       the input stream
+     * @param keyCache the key cache
+     * @return the read tag
+     */
+    public static NamedTag read(InputStream in, KeyCache keyCache) throws IOException {
+        NbtReader reader = new NbtReader(in);
+        reader.setKeyCache(keyCache);
+        return NamedTag.read(reader);
     }
 
+    public static NamedTag readGzipped(InputStream in, KeyCache keyCache) throws IOException {
+        try (InputStream gzip = decompress(in, Compression.Standard.GZIP)) {
+            return read(gzip, keyCache);
+        }
+    }
+
+    /**
+     * Reads a named tag from an uncompressed input stream.
+     * If the tag is a compound, it decodes its entries on first access.
+     *
+     * @param in the input stream
+     * @return the read tag
+     * @see CompoundTag#readLazy(DataInput)
+     */
+    public static NamedTag readLazy(InputStream in) throws IOException {
+        return NamedTag.readLazy(new NbtReader(in));
+    }
+
+    public static NamedTag readLazyGzipped(InputStream in) throws IOException {
+        try (InputStream gzip = decompress(in, Compression.Standard.GZIP)) {
+            return readLazy(gzip);
+        }
+    }
+
+    /**
+     * Reads a named tag from an uncompressed input stream, decoding only the subtrees chosen by a selector.
+     *
+     * @param in       the input stream
+     * @param selector the selector
+     * @return the partially decoded tag
+     */
+    public static NamedTag read(InputStream in, TagSelector selector) throws IOException {
+        return selector.read(new NbtReader(in));
+    }
+
+    public static NamedTag readGzipped(InputStream in, TagSelector selector) throws IOException {
+        try (InputStream gzip = decompress(in, Compression.Standard.GZIP)) {
+            return read(gzip, selector);
+        }
+    }
+
+    /**
+     * Writes a named tag to an output stream without compression.
+     *
+     * <p>The tag is encoded through an {@link NbtWriter}, which is flushed before returning.
+     *
+     * @param out the output stream
+     * @param tag the tag
+     */
     public static void write(OutputStream out, NamedTag tag) throws IOException {
-        tag.write(new DataOutputStream(out));
+        NbtWriter writer = new NbtWriter(out);
+        tag.write(writer);
+        writer.flush();
     }
 
     public static void writeGzipped(OutputStream out, NamedTag tag) throws IOException {
-        write(new GZIPOutputStream(out), tag);
+        write(out, tag, Compression.Standard.GZIP);
+    }
+
+    /**
+     * Writes a named tag to an output stream with compression.
+     * The output stream is not closed.
+     *
+     * @param out         the output stream
+     * @param tag         the tag
+     * @param compression the compression
+     */
+    public static void write(OutputStream out, NamedTag tag, Compression compression) throws IOException {
+        try (OutputStream compressed = compression.compress(new UnclosableOutputStream(out))) {
+            write(compressed, tag);
+        }
+    }
+
+    /**
+     * Writes a named tag to a channel without compression.
+     *
+     * <p>The tag is encoded through an {@link NbtWriter} that writes to the channel directly.
+     * Large byte arrays are written from the tag without being copied into the buffer,
+     * in gathering writes if the channel supports them.
+     *
+     * @param channel the channel, which must be in blocking mode
+     * @param tag     the tag
+     */
+    public static void write(WritableByteChannel channel, NamedTag tag) throws IOException {
+        NbtWriter writer = new NbtWriter(channel, STREAM_BUFFER_SIZE);
+        tag.write(writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes a named tag to a file, replacing the file if it exists.
+     *
+     * <p>Uncompressed tags are written to the file channel {@linkplain #write(WritableByteChannel, NamedTag) directly}.
+     * Compressed tags are streamed to the file channel through a large buffer.
+     *
+     * @param path        the path to the file
+     * @param tag         the tag
+     * @param compression the compression
+     */
+    public static void write(Path path, NamedTag tag, Compression compression) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (compression == Compression.Standard.NONE) {
+                write(channel, tag);
+            } else {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), STREAM_BUFFER_SIZE);
+                write(out, tag, compression);
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Encodes a named tag without compression into a byte array.
+     *
+     * <p>The array is allocated once with the {@linkplain NamedTag#serializedSize() serialized size} of the tag.
+     *
+     * @param tag the tag
+     * @return the encoded tag
+     */
+    public static byte[] toByteArray(NamedTag tag) throws IOException {
+        long size = tag.serializedSize();
+
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new OutOfMemoryError("Required buffer size is too large");
+        }
+
+        byte[] bytes = new byte[(int) size];
+        NbtWriter writer = new NbtWriter(bytes);
+        tag.write(writer);
+
+        // Only copies if a custom tag reported the wrong size
+        return writer.buffer() == bytes && writer.size() == bytes.length ? bytes : writer.toByteArray();
+    }
+
+    /**
+     * Lets decompressing streams be closed to release them without closing the underlying stream.
+     */
+    private static final class UnclosableInputStream extends FilterInputStream {
+        UnclosableInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Lets compressing streams be closed to finish them without closing the underlying stream.
+     */
+    private static final class UnclosableOutputStream extends FilterOutputStream {
+        UnclosableOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
     }
 }
@@ -0,0 +1,511 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Objects;
+
+/**
+ * A buffered {@link DataInput} that decodes NBT data straight from a byte buffer.
+ *
+ * <p>Primitives are decoded from an internal {@link ByteBuffer} window,
+ * and the underlying stream (if any) is only accessed in bulk when the window runs out.
+ * Readers can also be created directly over a {@code byte[]} or a {@link ByteBuffer},
+ * in which case no copying or refilling happens at all.
+ *
+ * <p>Note that a stream-backed reader may read ahead past the end of the data it decodes.
+ */
+public final class NbtReader implements DataInput {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MIN_BUFFER_SIZE = Long.BYTES;
+    private static final int BULK_CHUNK_SIZE = 8192;
+    private static final byte[] EMPTY_BYTES = new byte[0];
+    private static final char[] EMPTY_CHARS = new char[0];
+
+    private final InputStream source;
+    private final ByteBuffer buffer;
+    private KeyCache keyCache;
+
+    // Scratch arrays for decoding strings, grown on demand
+    private byte[] bytes = EMPTY_BYTES;
+    private char[] chars = EMPTY_CHARS;
+
+    /**
+     * Constructs a reader that reads from an input stream using the default buffer size.
+     *
+     * @param in the input stream
+     */
+    public NbtReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a reader that reads from an input stream.
+     *
+     * @param in         the input stream
+     * @param bufferSize the size of the internal buffer in bytes
+     */
+    public NbtReader(InputStream in, int bufferSize) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("The minimum buffer size is " + MIN_BUFFER_SIZE + ", found " + bufferSize);
+        }
+
+        this.source = Objects.requireNonNull(in, "in");
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        ((Buffer) buffer).limit(0);
+    }
+
+    /**
+     * Constructs a reader that reads from a byte array.
+     *
+     * @param bytes the byte array
+     */
+    public NbtReader(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Constructs a reader that reads from a region of a byte array.
+     *
+     * @param bytes  the byte array
+     * @param offset the start of the region
+     * @param length the length of the region
+     */
+    public NbtReader(byte[] bytes, int offset, int length) {
+        this(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * Constructs a reader that reads the remaining bytes of a byte buffer.
+     *
+     * <p>The position of the passed buffer is not modified.
+     *
+     * @param buffer the byte buffer
+     */
+    public NbtReader(ByteBuffer buffer) {
+        this.source = null;
+        this.buffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Gets the key cache used for compound keys.
+     *
+     * @return the key cache, or null if keys are not cached
+     */
+    public KeyCache getKeyCache() {
+        return keyCache;
+    }
+
+    /**
+     * Sets the key cache used for compound keys.
+     *
+     * @param keyCache the key cache, or null to not cache keys
+     */
+    public void setKeyCache(KeyCache keyCache) {
+        this.keyCache = keyCache;
+    }
+
+    /**
+     * Gets the number of bytes consumed from the buffer.
+     * Only meaningful for readers that are not backed by a stream.
+     */
+    int position() {
+        return buffer.position();
+    }
+
+    /**
+     * Ensures that at least {@code count} bytes are available in the buffer.
+     */
+    private void require(int count) throws IOException {
+        if (buffer.remaining() < count) {
+            fill(count);
+        }
+    }
+
+    private void fill(int count) throws IOException {
+        if (source == null) {
+            throw new EOFException();
+        }
+
+        buffer.compact();
+        try {
+            byte[] array = buffer.array();
+
+            while (buffer.position() < count) {
+                int read = source.read(array, buffer.position(), buffer.remaining());
+
+                if (read < 0) {
+                    throw new EOFException();
+                }
+
+                ((Buffer) buffer).position(buffer.position() + read);
+            }
+        } finally {
+            ((Buffer) buffer).flip();
+        }
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        Objects.requireNonNull(b, "b");
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        int buffered = Math.min(len, buffer.remaining());
+        buffer.get(b, off, buffered);
+
+        if (buffered < len) {
+            if (source == null) {
+                throw new EOFException();
+            }
+
+            // Large reads bypass the buffer entirely
+            for (int n = buffered; n < len; ) {
+                int read = source.read(b, off + n, len - n);
+
+                if (read < 0) {
+                    throw new EOFException();
+                }
+
+                n += read;
+            }
+        }
+    }
+
+    /**
+     * Reads big-endian ints into an array, filling it completely.
+     *
+     * @param values the array to fill
+     * @throws EOFException if the end of the input is reached before the array is filled
+     */
+    public void readFully(int[] values) throws IOException {
+        readFully(values, 0, values.length);
+    }
+
+    /**
+     * Reads big-endian ints into a region of an array.
+     *
+     * @param values the array to fill
+     * @param off    the start of the region
+     * @param len    the number of ints to read
+     * @throws EOFException if the end of the input is reached before the region is filled
+     */
+    public void readFully(int[] values, int off, int len) throws IOException {
+        Objects.requireNonNull(values, "values");
+        if (off < 0 || len < 0 || len > values.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        while (len > 0) {
+            require(Integer.BYTES);
+            int count = Math.min(len, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().get(values, off, count);
+            ((Buffer) buffer).position(buffer.position() + count * Integer.BYTES);
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Reads big-endian longs into an array, filling it completely.
+     *
+     * @param values the array to fill
+     * @throws EOFException if the end of the input is reached before the array is filled
+     */
+    public void readFully(long[] values) throws IOException {
+        readFully(values, 0, values.length);
+    }
+
+    /**
+     * Reads big-endian longs into a region of an array.
+     *
+     * @param values the array to fill
+     * @param off    the start of the region
+     * @param len    the number of longs to read
+     * @throws EOFException if the end of the input is reached before the region is filled
+     */
+    public void readFully(long[] values, int off, int len) throws IOException {
+        Objects.requireNonNull(values, "values");
+        if (off < 0 || len < 0 || len > values.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        while (len > 0) {
+            require(Long.BYTES);
+            int count = Math.min(len, buffer.remaining() / Long.BYTES);
+            buffer.asLongBuffer().get(values, off, count);
+            ((Buffer) buffer).position(buffer.position() + count * Long.BYTES);
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Reads big-endian ints from any data input into an array in bulk.
+     */
+    static void readInts(DataInput input, int[] values) throws IOException {
+        if (input instanceof NbtReader) {
+            ((NbtReader) input).readFully(values);
+            return;
+        }
+
+        byte[] chunk = new byte[Math.min(values.length * Integer.BYTES, BULK_CHUNK_SIZE)];
+        IntBuffer view = ByteBuffer.wrap(chunk).asIntBuffer();
+
+        for (int off = 0; off < values.length; ) {
+            int count = Math.min(values.length - off, chunk.length / Integer.BYTES);
+            input.readFully(chunk, 0, count * Integer.BYTES);
+            ((Buffer) view).clear();
+            view.get(values, off, count);
+            off += count;
+        }
+    }
+
+    /**
+     * Reads big-endian longs from any data input into an array in bulk.
+     */
+    static void readLongs(DataInput input, long[] values) throws IOException {
+        if (input instanceof NbtReader) {
+            ((NbtReader) input).readFully(values);
+            return;
+        }
+
+        byte[] chunk = new byte[Math.min(values.length * Long.BYTES, BULK_CHUNK_SIZE)];
+        LongBuffer view = ByteBuffer.wrap(chunk).asLongBuffer();
+
+        for (int off = 0; off < values.length; ) {
+            int count = Math.min(values.length - off, chunk.length / Long.BYTES);
+            input.readFully(chunk, 0, count * Long.BYTES);
+            ((Buffer) view).clear();
+            view.get(values, off, count);
+            off += count;
+        }
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+
+        int buffered = Math.min(n, buffer.remaining());
+        ((Buffer) buffer).position(buffer.position() + buffered);
+        int skipped = buffered;
+
+        if (source != null) {
+            while (skipped < n) {
+                long count = source.skip(n - skipped);
+
+                if (count <= 0) {
+                    // InputStream.skip may refuse to skip without being at EOF
+                    if (source.read() < 0) {
+                        break;
+                    }
+
+                    count = 1;
+                }
+
+                skipped += (int) count;
+            }
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        require(Byte.BYTES);
+        return buffer.get();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        require(Short.BYTES);
+        return buffer.getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        require(Character.BYTES);
+        return buffer.getChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        require(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        require(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        require(Float.BYTES);
+        return buffer.getFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        require(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    /**
+     * Reads a line of text as specified by {@link DataInput#readLine()}.
+     *
+     * @return the next line of text, or null if the end of the input is reached before any byte
+     * @deprecated NBT data does not contain lines of text. See {@link java.io.DataInputStream#readLine()}.
+     */
+    @Deprecated
+    @Override
+    public String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder();
+
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                try {
+                    fill(1);
+                } catch (EOFException e) {
+                    return sb.length() == 0 ? null : sb.toString();
+                }
+            }
+
+            int c = buffer.get() & 0xFF;
+
+            if (c == '\n') {
+                return sb.toString();
+            } else if (c == '\r') {
+                try {
+                    require(1);
+
+                    if (buffer.get(buffer.position()) == '\n') {
+                        buffer.get();
+                    }
+                } catch (EOFException ignored) {
+                }
+
+                return sb.toString();
+            }
+
+            sb.append((char) c);
+        }
+    }
+
+    /**
+     * Reads a compound key, using the key cache if there is one.
+     *
+     * @return the key
+     */
+    String readKey() throws IOException {
+        if (keyCache == null) {
+            return readUTF();
+        }
+
+        int length = readUnsignedShort();
+
+        if (length > KeyCache.MAX_KEY_LENGTH) {
+            return readUtfBytes(length);
+        }
+
+        String key;
+
+        if (length > buffer.capacity()) {
+            // Longer than a small buffer can hold
+            byte[] bytes = scratchBytes(length);
+            readFully(bytes, 0, length);
+            return keyCache.get(bytes, 0, length);
+        }
+
+        require(length);
+
+        if (buffer.hasArray()) {
+            key = keyCache.get(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            ((Buffer) buffer).position(buffer.position() + length);
+        } else {
+            byte[] bytes = scratchBytes(length);
+            buffer.get(bytes, 0, length);
+            key = keyCache.get(bytes, 0, length);
+        }
+
+        return key;
+    }
+
+    /**
+     * Reads a compound key from any data input, using the key cache if it is an {@code NbtReader}.
+     */
+    static String readKey(DataInput input) throws IOException {
+        return input instanceof NbtReader ? ((NbtReader) input).readKey() : input.readUTF();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return readUtfBytes(readUnsignedShort());
+    }
+
+    private String readUtfBytes(int length) throws IOException {
+        if (buffer.hasArray() && length <= buffer.capacity()) {
+            // Decode straight from the buffer
+            require(length);
+            int offset = buffer.arrayOffset() + buffer.position();
+            ((Buffer) buffer).position(buffer.position() + length);
+            return decodeUtf(buffer.array(), offset, length);
+        }
+
+        byte[] bytes = scratchBytes(length);
+        readFully(bytes, 0, length);
+        return decodeUtf(bytes, 0, length);
+    }
+
+    private String decodeUtf(byte[] bytes, int offset, int length) throws IOException {
+        int ascii = ModifiedUtf8.countAscii(bytes, offset, length);
+
+        if (ascii == length) {
+            return ModifiedUtf8.decodeAscii(bytes, offset, length);
+        }
+
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+
+        return ModifiedUtf8.decode(bytes, offset, length, ascii, chars);
+    }
+
+    private byte[] scratchBytes(int length) {
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+
+        return bytes;
+    }
+}
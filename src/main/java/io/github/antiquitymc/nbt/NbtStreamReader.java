@@ -0,0 +1,478 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A pull parser that reads a named tag as a sequence of {@linkplain Event events}
+ * without building a tree of {@link Tag} objects.
+ *
+ * <p>Each call to {@link #next()} advances to the next event. Compound entries report their name
+ * through {@link #getName()}, and list elements have a null name.
+ * Strings and arrays are only decoded if one of their getters is called,
+ * and are skipped by length otherwise.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * NbtStreamReader reader = new NbtStreamReader(new NbtReader(in));
+ * while (reader.next() != NbtStreamReader.Event.END_DOCUMENT) {
+ *     if (reader.getEvent() == NbtStreamReader.Event.VALUE && "Time".equals(reader.getName())) {
+ *         long time = reader.getLong();
+ *     }
+ * }
+ * }</pre>
+ */
+public final class NbtStreamReader {
+    private static final int INITIAL_DEPTH = 8;
+
+    private final DataInput input;
+
+    private Event event;
+    private String name;
+    private TagType.Standard type;
+    private long bits;
+    private boolean pending;
+    private Object value;
+    private TagType.Standard listElementType;
+    private int listSize;
+
+    // Stack of open containers. Compound frames have a null element type.
+    private TagType.Standard[] elementTypes = new TagType.Standard[INITIAL_DEPTH];
+    private int[] remaining = new int[INITIAL_DEPTH];
+    private int depth;
+
+    /**
+     * Constructs a stream reader that reads a single named tag from a data input.
+     *
+     * @param input the data input
+     */
+    public NbtStreamReader(DataInput input) {
+        this.input = Objects.requireNonNull(input, "input");
+    }
+
+    /**
+     * Checks if there are more events after the current one.
+     *
+     * @return true if the end of the document has not been reached
+     */
+    public boolean hasNext() {
+        return event != Event.END_DOCUMENT;
+    }
+
+    /**
+     * Advances to the next event.
+     *
+     * @return the next event
+     * @throws NoSuchElementException if the end of the document has already been reached
+     */
+    public Event next() throws IOException {
+        if (event == null) {
+            return readRoot();
+        } else if (event == Event.END_DOCUMENT) {
+            throw new NoSuchElementException("End of document");
+        }
+
+        discardPending();
+
+        if (depth == 0) {
+            return set(Event.END_DOCUMENT, null, null);
+        }
+
+        int frame = depth - 1;
+        TagType.Standard elementType = elementTypes[frame];
+
+        if (elementType != null) {
+            if (remaining[frame] == 0) {
+                depth--;
+                return set(Event.END_LIST, null, TagType.Standard.LIST);
+            }
+
+            remaining[frame]--;
+            return begin(null, elementType);
+        } else {
+            byte typeId = input.readByte();
+
+            if (typeId == TagType.Standard.END.getId()) {
+                depth--;
+                return set(Event.END_COMPOUND, null, TagType.Standard.COMPOUND);
+            }
+
+            TagType.Standard type = TagType.Standard.byId(typeId);
+            return begin(NbtReader.readKey(input), type);
+        }
+    }
+
+    private Event readRoot() throws IOException {
+        byte typeId = input.readByte();
+
+        if (typeId == TagType.Standard.END.getId()) {
+            return set(Event.END_DOCUMENT, null, null);
+        }
+
+        TagType.Standard type = TagType.Standard.byId(typeId);
+        return begin(NbtReader.readKey(input), type);
+    }
+
+    private Event begin(String name, TagType.Standard type) throws IOException {
+        switch (type) {
+            case COMPOUND:
+                push(null, 0);
+                return set(Event.START_COMPOUND, name, type);
+            case LIST:
+                TagType.Standard elementType = TagType.Standard.byId(input.readByte());
+                int size = Math.max(input.readInt(), 0);
+                push(elementType, size);
+                set(Event.START_LIST, name, type);
+                listElementType = elementType;
+                listSize = size;
+                return event;
+            case BYTE:
+                bits = input.readByte();
+                break;
+            case SHORT:
+                bits = input.readShort();
+                break;
+            case INT:
+                bits = input.readInt();
+                break;
+            case LONG:
+                bits = input.readLong();
+                break;
+            case FLOAT:
+                bits = Float.floatToRawIntBits(input.readFloat());
+                break;
+            case DOUBLE:
+                bits = Double.doubleToRawLongBits(input.readDouble());
+                break;
+            case BYTE_ARRAY:
+            case STRING:
+            case INT_ARRAY:
+            case LONG_ARRAY:
+                pending = true;
+                break;
+            default:
+                break;
+        }
+
+        return set(Event.VALUE, name, type);
+    }
+
+    private Event set(Event event, String name, TagType.Standard type) {
+        this.event = event;
+        this.name = name;
+        this.type = type;
+        this.value = null;
+        this.listElementType = null;
+        this.listSize = 0;
+        return event;
+    }
+
+    private void push(TagType.Standard elementType, int size) {
+        if (depth == elementTypes.length) {
+            elementTypes = Arrays.copyOf(elementTypes, depth * 2);
+            remaining = Arrays.copyOf(remaining, depth * 2);
+        }
+
+        elementTypes[depth] = elementType;
+        remaining[depth] = size;
+        depth++;
+    }
+
+    private void discardPending() throws IOException {
+        if (pending) {
+            pending = false;
+            TagSkipper.skip(type, input);
+        }
+    }
+
+    /**
+     * Gets the current event.
+     *
+     * @return the current event, or null if {@link #next()} hasn't been called yet
+     */
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * Gets the name of the current value or container.
+     *
+     * @return the name, or null for list elements and end events
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the type of the current value or container.
+     *
+     * @return the type, or null for {@link Event#END_DOCUMENT}
+     */
+    public TagType.Standard getTagType() {
+        return type;
+    }
+
+    /**
+     * Gets the nesting depth of the current event.
+     * The root tag and its end event have a depth of zero.
+     *
+     * @return the depth
+     */
+    public int getDepth() {
+        return event == Event.START_COMPOUND || event == Event.START_LIST ? depth - 1 : depth;
+    }
+
+    /**
+     * Gets the element type of the list that was just started.
+     *
+     * @return the element type
+     * @throws IllegalStateException if the current event is not {@link Event#START_LIST}
+     */
+    public TagType.Standard getListElementType() {
+        checkEvent(Event.START_LIST);
+        return listElementType;
+    }
+
+    /**
+     * Gets the size of the list that was just started.
+     *
+     * @return the number of elements
+     * @throws IllegalStateException if the current event is not {@link Event#START_LIST}
+     */
+    public int getListSize() {
+        checkEvent(Event.START_LIST);
+        return listSize;
+    }
+
+    public byte getByte() {
+        checkValue(TagType.Standard.BYTE);
+        return (byte) bits;
+    }
+
+    public short getShort() {
+        checkValue(TagType.Standard.SHORT);
+        return (short) bits;
+    }
+
+    public int getInt() {
+        checkValue(TagType.Standard.INT);
+        return (int) bits;
+    }
+
+    public long getLong() {
+        checkValue(TagType.Standard.LONG);
+        return bits;
+    }
+
+    public float getFloat() {
+        checkValue(TagType.Standard.FLOAT);
+        return Float.intBitsToFloat((int) bits);
+    }
+
+    public double getDouble() {
+        checkValue(TagType.Standard.DOUBLE);
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * Gets the current byte value as a boolean, like {@link BooleanTag}.
+     *
+     * @return true if the byte is non-zero
+     * @throws IllegalStateException if the current event is not a byte value
+     */
+    public boolean getBoolean() {
+        return getByte() != 0;
+    }
+
+    /**
+     * Gets the current short value as a character, like {@link CharTag}.
+     *
+     * @return the character
+     * @throws IllegalStateException if the current event is not a short value
+     */
+    public char getChar() {
+        return (char) getShort();
+    }
+
+    public String getString() throws IOException {
+        checkValue(TagType.Standard.STRING);
+        if (pending) {
+            pending = false;
+            value = input.readUTF();
+        }
+
+        return (String) value;
+    }
+
+    public byte[] getByteArray() throws IOException {
+        checkValue(TagType.Standard.BYTE_ARRAY);
+        if (pending) {
+            pending = false;
+            value = ByteArrayTag.read(input).getValue();
+        }
+
+        return (byte[]) value;
+    }
+
+    public int[] getIntArray() throws IOException {
+        checkValue(TagType.Standard.INT_ARRAY);
+        if (pending) {
+            pending = false;
+            value = IntArrayTag.read(input).getValue();
+        }
+
+        return (int[]) value;
+    }
+
+    public long[] getLongArray() throws IOException {
+        checkValue(TagType.Standard.LONG_ARRAY);
+        if (pending) {
+            pending = false;
+            value = LongArrayTag.read(input).getValue();
+        }
+
+        return (long[]) value;
+    }
+
+    /**
+     * Reads the current value or container as a tag.
+     *
+     * <p>If the current event starts a container, the rest of it is decoded
+     * and the reader is moved to the matching end event.
+     *
+     * @return the tag
+     * @throws IllegalStateException if the current event is not a value or the start of a container
+     */
+    public Tag readTag() throws IOException {
+        switch (event == null ? Event.END_DOCUMENT : event) {
+            case VALUE:
+                return readValue();
+            case START_COMPOUND:
+                CompoundTag compound = CompoundTag.read(input);
+                depth--;
+                set(Event.END_COMPOUND, null, TagType.Standard.COMPOUND);
+                return compound;
+            case START_LIST:
+                ListTag<?> list = ListTag.readElements(listElementType, remaining[depth - 1], input);
+                depth--;
+                set(Event.END_LIST, null, TagType.Standard.LIST);
+                return list;
+            default:
+                throw new IllegalStateException("Cannot read a tag at " + event);
+        }
+    }
+
+    /**
+     * Reads the current value or container as a tag of a possibly non-standard type.
+     *
+     * @param type the wanted type
+     * @return the tag, converted from its standard equivalent if needed
+     * @throws IllegalStateException if the current event is not a value or the start of a container
+     * @throws ClassCastException    if the type is incompatible
+     * @see #readTag()
+     */
+    public Tag readTag(TagType type) throws IOException {
+        if (this.type != type.getStandardEquivalent()) {
+            throw new ClassCastException("Incompatible type: " + (this.type == null ? "none" : this.type.getName()));
+        }
+
+        Tag tag = readTag();
+        return type == this.type ? tag : type.fromStandardEquivalent(tag);
+    }
+
+    private Tag readValue() throws IOException {
+        switch (type) {
+            case END:
+                return EndTag.INSTANCE;
+            case BYTE:
+                return ByteTag.of(getByte());
+            case SHORT:
+                return ShortTag.of(getShort());
+            case INT:
+                return IntTag.of(getInt());
+            case LONG:
+                return new LongTag(getLong());
+            case FLOAT:
+                return new FloatTag(getFloat());
+            case DOUBLE:
+                return new DoubleTag(getDouble());
+            case BYTE_ARRAY:
+                return new ByteArrayTag(getByteArray());
+            case STRING:
+                return new StringTag(getString());
+            case INT_ARRAY:
+                return new IntArrayTag(getIntArray());
+            case LONG_ARRAY:
+                return new LongArrayTag(getLongArray());
+            default:
+                throw new IllegalStateException("Unexpected value type: " + type);
+        }
+    }
+
+    /**
+     * Skips the rest of the container that was just started,
+     * moving the reader to the matching end event.
+     *
+     * @throws IllegalStateException if the current event is not the start of a container
+     */
+    public void skipChildren() throws IOException {
+        if (event == Event.START_COMPOUND) {
+            TagSkipper.skipCompound(input);
+            depth--;
+            set(Event.END_COMPOUND, null, TagType.Standard.COMPOUND);
+        } else if (event == Event.START_LIST) {
+            TagSkipper.skipList(listElementType, remaining[depth - 1], input);
+            depth--;
+            set(Event.END_LIST, null, TagType.Standard.LIST);
+        } else {
+            throw new IllegalStateException("Cannot skip children at " + event);
+        }
+    }
+
+    private void checkEvent(Event expected) {
+        if (event != expected) {
+            throw new IllegalStateException("Expected " + expected + ", found " + event);
+        }
+    }
+
+    private void checkValue(TagType.Standard expected) {
+        checkEvent(Event.VALUE);
+
+        if (type != expected) {
+            throw new IllegalStateException("Expected a value of type " + expected + ", found " + type);
+        }
+    }
+
+    /**
+     * An event produced by a {@link NbtStreamReader}.
+     */
+    public enum Event {
+        /**
+         * The start of a compound tag. Followed by its entries and {@link #END_COMPOUND}.
+         */
+        START_COMPOUND,
+        /**
+         * The end of a compound tag.
+         */
+        END_COMPOUND,
+        /**
+         * The start of a list tag. Followed by its elements and {@link #END_LIST}.
+         */
+        START_LIST,
+        /**
+         * The end of a list tag.
+         */
+        END_LIST,
+        /**
+         * A tag that is not a compound or a list.
+         */
+        VALUE,
+        /**
+         * The end of the named tag. No events follow it.
+         */
+        END_DOCUMENT,
+    }
+}
@@ -0,0 +1,506 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A buffered {@link DataOutput} that encodes NBT data into a reusable, growable byte array.
+ *
+ * <p>When constructed with an output stream or a channel, the buffer is flushed to it in bulk
+ * whenever it fills up and when {@link #flush()} is called.
+ * Without one, the buffer grows as needed and its contents
+ * can be retrieved with {@link #toByteArray()}.
+ */
+public final class NbtWriter implements DataOutput {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MIN_BUFFER_SIZE = Long.BYTES;
+    private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+    private static final int BULK_CHUNK_SIZE = 8192;
+
+    private final OutputStream sink;
+    private final WritableByteChannel channel;
+    private byte[] buffer;
+    private int position;
+
+    /**
+     * Constructs an in-memory writer with the default initial capacity.
+     */
+    public NbtWriter() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs an in-memory writer.
+     *
+     * @param initialCapacity the initial capacity of the buffer in bytes
+     */
+    public NbtWriter(int initialCapacity) {
+        this.sink = null;
+        this.channel = null;
+        this.buffer = new byte[checkBufferSize(initialCapacity)];
+    }
+
+    /**
+     * Constructs a writer that flushes to an output stream using the default buffer size.
+     *
+     * @param out the output stream
+     */
+    public NbtWriter(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a writer that flushes to an output stream.
+     *
+     * @param out        the output stream
+     * @param bufferSize the size of the buffer in bytes
+     */
+    public NbtWriter(OutputStream out, int bufferSize) {
+        this.sink = Objects.requireNonNull(out, "out");
+        this.channel = null;
+        this.buffer = new byte[checkBufferSize(bufferSize)];
+    }
+
+    /**
+     * Constructs a writer that flushes to a channel using the default buffer size.
+     *
+     * @param channel the channel, which must be in blocking mode
+     */
+    public NbtWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a writer that flushes to a channel.
+     *
+     * <p>Byte arrays that don't fit in the buffer are not copied into it. They are written
+     * to the channel together with the buffered bytes, in a single gathering write if the channel
+     * is a {@link GatheringByteChannel}.
+     *
+     * @param channel    the channel, which must be in blocking mode
+     * @param bufferSize the size of the buffer in bytes
+     */
+    public NbtWriter(WritableByteChannel channel, int bufferSize) {
+        this.sink = null;
+        this.channel = Objects.requireNonNull(channel, "channel");
+        this.buffer = new byte[checkBufferSize(bufferSize)];
+    }
+
+    /**
+     * Constructs an in-memory writer that starts writing into an existing array.
+     * The array is replaced with a larger copy if it fills up.
+     *
+     * @param buffer the initial buffer
+     */
+    NbtWriter(byte[] buffer) {
+        this.sink = null;
+        this.channel = null;
+        this.buffer = buffer;
+    }
+
+    private static int checkBufferSize(int size) {
+        if (size < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("The minimum buffer size is " + MIN_BUFFER_SIZE + ", found " + size);
+        }
+
+        return size;
+    }
+
+    /**
+     * Gets the number of bytes currently held in the buffer.
+     *
+     * @return the number of buffered bytes
+     */
+    public int size() {
+        return position;
+    }
+
+    /**
+     * Copies the buffered bytes into a new array.
+     *
+     * @return the buffered bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    /**
+     * Gets the current buffer without copying it.
+     *
+     * @return the buffer
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Discards the buffered bytes, keeping the buffer for reuse.
+     */
+    public void reset() {
+        position = 0;
+    }
+
+    /**
+     * Writes the buffered bytes to the output stream or channel (if any) and flushes the stream.
+     */
+    public void flush() throws IOException {
+        if (sink != null) {
+            drain();
+            sink.flush();
+        } else if (channel != null) {
+            drain();
+        }
+    }
+
+    private boolean isInMemory() {
+        return sink == null && channel == null;
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            if (channel != null) {
+                writeFully(ByteBuffer.wrap(buffer, 0, position));
+            } else {
+                sink.write(buffer, 0, position);
+            }
+
+            position = 0;
+        }
+    }
+
+    private void writeFully(ByteBuffer... buffers) throws IOException {
+        ByteBuffer last = buffers[buffers.length - 1];
+
+        if (channel instanceof GatheringByteChannel) {
+            while (last.hasRemaining()) {
+                ((GatheringByteChannel) channel).write(buffers);
+            }
+        } else {
+            for (ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ensures that at least {@code count} bytes can be written to the buffer.
+     * The count must not exceed the buffer size if this writer has an output stream or a channel.
+     */
+    private void require(int count) throws IOException {
+        if (buffer.length - position < count) {
+            if (!isInMemory()) {
+                drain();
+            } else {
+                grow(count);
+            }
+        }
+    }
+
+    private void grow(int count) {
+        int needed = position + count;
+
+        if (needed < 0 || needed > MAX_BUFFER_SIZE) {
+            throw new OutOfMemoryError("Required buffer size is too large");
+        }
+
+        int capacity = Math.max(needed, (int) Math.min((long) buffer.length << 1, MAX_BUFFER_SIZE));
+        buffer = Arrays.copyOf(buffer, capacity);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        require(Byte.BYTES);
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        Objects.requireNonNull(b, "b");
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (!isInMemory() && len > buffer.length - position) {
+            if (channel != null && len >= buffer.length) {
+                // Write the buffered bytes and the array together without copying the array
+                writeFully(ByteBuffer.wrap(buffer, 0, position), ByteBuffer.wrap(b, off, len));
+                position = 0;
+                return;
+            }
+
+            drain();
+
+            // Large writes bypass the buffer entirely
+            if (len >= buffer.length) {
+                sink.write(b, off, len);
+                return;
+            }
+        } else {
+            require(len);
+        }
+
+        System.arraycopy(b, off, buffer, position, len);
+        position += len;
+    }
+
+    /**
+     * Writes an array of ints in big-endian order.
+     *
+     * @param values the ints
+     */
+    public void write(int[] values) throws IOException {
+        write(values, 0, values.length);
+    }
+
+    /**
+     * Writes a region of an int array in big-endian order.
+     *
+     * @param values the ints
+     * @param off    the start of the region
+     * @param len    the number of ints to write
+     */
+    public void write(int[] values, int off, int len) throws IOException {
+        Objects.requireNonNull(values, "values");
+        if (off < 0 || len < 0 || len > values.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (isInMemory()) {
+            require(len * Integer.BYTES);
+        }
+
+        while (len > 0) {
+            require(Integer.BYTES);
+            int count = Math.min(len, (buffer.length - position) / Integer.BYTES);
+            ByteBuffer.wrap(buffer, position, count * Integer.BYTES).asIntBuffer().put(values, off, count);
+            position += count * Integer.BYTES;
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Writes an array of longs in big-endian order.
+     *
+     * @param values the longs
+     */
+    public void write(long[] values) throws IOException {
+        write(values, 0, values.length);
+    }
+
+    /**
+     * Writes a region of a long array in big-endian order.
+     *
+     * @param values the longs
+     * @param off    the start of the region
+     * @param len    the number of longs to write
+     */
+    public void write(long[] values, int off, int len) throws IOException {
+        Objects.requireNonNull(values, "values");
+        if (off < 0 || len < 0 || len > values.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (isInMemory()) {
+            require(len * Long.BYTES);
+        }
+
+        while (len > 0) {
+            require(Long.BYTES);
+            int count = Math.min(len, (buffer.length - position) / Long.BYTES);
+            ByteBuffer.wrap(buffer, position, count * Long.BYTES).asLongBuffer().put(values, off, count);
+            position += count * Long.BYTES;
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Writes big-endian ints to any data output in bulk.
+     */
+    static void writeInts(DataOutput output, int[] values) throws IOException {
+        writeInts(output, values, 0, values.length);
+    }
+
+    /**
+     * Writes part of an int array as big-endian ints to any data output in bulk.
+     */
+    static void writeInts(DataOutput output, int[] values, int off, int len) throws IOException {
+        if (output instanceof NbtWriter) {
+            ((NbtWriter) output).write(values, off, len);
+            return;
+        }
+
+        byte[] chunk = new byte[Math.min(len * Integer.BYTES, BULK_CHUNK_SIZE)];
+        IntBuffer view = ByteBuffer.wrap(chunk).asIntBuffer();
+
+        for (int end = off + len; off < end; ) {
+            int count = Math.min(end - off, chunk.length / Integer.BYTES);
+            ((Buffer) view).clear();
+            view.put(values, off, count);
+            output.write(chunk, 0, count * Integer.BYTES);
+            off += count;
+        }
+    }
+
+    /**
+     * Writes big-endian longs to any data output in bulk.
+     */
+    static void writeLongs(DataOutput output, long[] values) throws IOException {
+        writeLongs(output, values, 0, values.length);
+    }
+
+    /**
+     * Writes part of a long array as big-endian longs to any data output in bulk.
+     */
+    static void writeLongs(DataOutput output, long[] values, int off, int len) throws IOException {
+        if (output instanceof NbtWriter) {
+            ((NbtWriter) output).write(values, off, len);
+            return;
+        }
+
+        byte[] chunk = new byte[Math.min(len * Long.BYTES, BULK_CHUNK_SIZE)];
+        LongBuffer view = ByteBuffer.wrap(chunk).asLongBuffer();
+
+        for (int end = off + len; off < end; ) {
+            int count = Math.min(end - off, chunk.length / Long.BYTES);
+            ((Buffer) view).clear();
+            view.put(values, off, count);
+            output.write(chunk, 0, count * Long.BYTES);
+            off += count;
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean v) throws IOException {
+        write(v ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(int v) throws IOException {
+        write(v);
+    }
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        require(Short.BYTES);
+        byte[] buffer = this.buffer;
+        int position = this.position;
+        buffer[position] = (byte) (v >>> 8);
+        buffer[position + 1] = (byte) v;
+        this.position = position + Short.BYTES;
+    }
+
+    @Override
+    public void writeChar(int v) throws IOException {
+        writeShort(v);
+    }
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        require(Integer.BYTES);
+        byte[] buffer = this.buffer;
+        int position = this.position;
+        buffer[position] = (byte) (v >>> 24);
+        buffer[position + 1] = (byte) (v >>> 16);
+        buffer[position + 2] = (byte) (v >>> 8);
+        buffer[position + 3] = (byte) v;
+        this.position = position + Integer.BYTES;
+    }
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        require(Long.BYTES);
+        byte[] buffer = this.buffer;
+        int position = this.position;
+        buffer[position] = (byte) (v >>> 56);
+        buffer[position + 1] = (byte) (v >>> 48);
+        buffer[position + 2] = (byte) (v >>> 40);
+        buffer[position + 3] = (byte) (v >>> 32);
+        buffer[position + 4] = (byte) (v >>> 24);
+        buffer[position + 5] = (byte) (v >>> 16);
+        buffer[position + 6] = (byte) (v >>> 8);
+        buffer[position + 7] = (byte) v;
+        this.position = position + Long.BYTES;
+    }
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+    @Override
+    public void writeBytes(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            write(s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeChars(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            writeShort(s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeUTF(String s) throws IOException {
+        long encodedLength = ModifiedUtf8.encodedLength(s);
+
+        if (encodedLength > ModifiedUtf8.MAX_ENCODED_LENGTH) {
+            throw new UTFDataFormatException("encoded string too long: " + encodedLength + " bytes");
+        }
+
+        int length = (int) encodedLength;
+        writeShort(length);
+
+        if (isInMemory() || length <= buffer.length) {
+            // Encode straight into the buffer
+            require(length);
+            position = ModifiedUtf8.encode(s, length, buffer, position);
+        } else {
+            writeUtfSlowly(s);
+        }
+    }
+
+    private void writeUtfSlowly(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+
+            if (c != 0 && c < 0x80) {
+                write(c);
+            } else if (c < 0x800) {
+                require(2);
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                require(3);
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.antiquitymc.nbt;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The default backing list of list tags whose elements aren't stored in a {@link PrimitiveTagList}.
+ *
+ * <p>It works like an {@link java.util.ArrayList}, but every change goes through {@link #set}, {@link #add},
+ * {@link #remove}, {@link #removeRange} or {@link #clear}, including the changes made through iterators
+ * and sub lists, so that they can be {@linkplain ChangeTracker tracked}.
+ *
+ * @param <T> the element tag type
+ */
+final class ObjectTagList<T extends Tag> extends AbstractList<T> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 4;
+    private static final Tag[] EMPTY = {};
+
+    private Tag[] elements;
+    private int size;
+    private ChangeTracker tracker;
+
+    ObjectTagList() {
+        elements = EMPTY;
+    }
+
+    ObjectTagList(int capacity) {
+        elements = capacity > 0 ? new Tag[capacity] : EMPTY;
+    }
+
+    /**
+     * Gets the change tracker of this list, creating it if requested.
+     *
+     * @param create whether to create the tracker
+     * @return the tracker, or null if not created
+     */
+    ChangeTracker tracker(boolean create) {
+        if (tracker == null && create) {
+            tracker = new ChangeTracker();
+        }
+
+        return tracker;
+    }
+
+    private void changed() {
+        if (tracker != null) {
+            tracker.changed();
+        }
+    }
+
+    private void detach(Tag element) {
+        if (tracker != null && element != null) {
+            ChangeTracker child = ChangeTracker.of(element);
+
+            if (child != null) {
+                child.detach(tracker);
+            }
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T get(int index) {
+        checkIndex(index);
+        return (T) elements[index];
+    }
+
+    @Override
+    public T set(int index, T element) {
+        T old = get(index);
+        detach(old);
+        elements[index] = element;
+        changed();
+        return old;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(INITIAL_CAPACITY, size * 2));
+        }
+
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = element;
+        size++;
+        modCount++;
+        changed();
+    }
+
+    @Override
+    public T remove(int index) {
+        T old = get(index);
+        detach(old);
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        elements[--size] = null;
+        modCount++;
+        changed();
+        return old;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            detach(elements[i]);
+        }
+
+        System.arraycopy(elements, toIndex, elements, fromIndex, size - toIndex);
+        int newSize = size - (toIndex - fromIndex);
+        Arrays.fill(elements, newSize, size, null);
+        size = newSize;
+        modCount++;
+        changed();
+    }
+
+    @Override
+    public void clear() {
+        removeRange(0, size);
+    }
+}
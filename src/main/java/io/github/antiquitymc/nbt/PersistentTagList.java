@@ -0,0 +1,218 @@
+package io.github.antiquitymc.nbt;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An immutable backing list of list tags that shares its structure with the lists derived from it.
+ *
+ * <p>The elements are stored in a tree of 32-element arrays, with the last elements in a separate tail array.
+ * {@link #with}, {@link #withAdded} and {@link #withoutLast} copy only the arrays on the path to
+ * the changed element, and mostly just the tail.
+ *
+ * <p>All {@link List} mutators throw {@link UnsupportedOperationException}.
+ *
+ * @param <T> the element tag type
+ */
+final class PersistentTagList<T extends Tag> extends AbstractList<T> implements RandomAccess {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentTagList<?> EMPTY = new PersistentTagList<>(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentTagList(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends Tag> PersistentTagList<T> empty() {
+        return (PersistentTagList<T>) EMPTY;
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] arrayFor(int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+
+        return node;
+    }
+
+    /**
+     * Returns a list with an element replaced.
+     *
+     * @param index   the index of the element
+     * @param element the new element
+     * @return the new list
+     */
+    PersistentTagList<T> with(int index, T element) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentTagList<>(size, shift, root, newTail);
+        }
+
+        return new PersistentTagList<>(size, shift, replace(shift, root, index, element), tail);
+    }
+
+    private static Object[] replace(int level, Object[] node, int index, Object element) {
+        Object[] copy = node.clone();
+
+        if (level == 0) {
+            copy[index & MASK] = element;
+        } else {
+            int i = (index >>> level) & MASK;
+            copy[i] = replace(level - BITS, (Object[]) node[i], index, element);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Returns a list with an element added to the end.
+     *
+     * @param element the element
+     * @return the new list
+     */
+    PersistentTagList<T> withAdded(T element) {
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentTagList<>(size + 1, shift, root, newTail);
+        }
+
+        // The tail is full, so it moves into the tree
+        Object[] newRoot;
+        int newShift = shift;
+
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root);
+        }
+
+        return new PersistentTagList<>(size + 1, newShift, newRoot, new Object[] { element });
+    }
+
+    private Object[] pushTail(int level, Object[] parent) {
+        int i = ((size - 1) >>> level) & MASK;
+        Object[] copy = parent.clone();
+
+        if (level == BITS) {
+            copy[i] = tail;
+        } else {
+            Object[] child = (Object[]) parent[i];
+            copy[i] = child != null ? pushTail(level - BITS, child) : newPath(level - BITS, tail);
+        }
+
+        return copy;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0) {
+            return node;
+        }
+
+        Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
+    }
+
+    /**
+     * Returns a list with the last element removed.
+     *
+     * @return the new list
+     * @throws NoSuchElementException if this list is empty
+     */
+    PersistentTagList<T> withoutLast() {
+        if (size == 0) {
+            throw new NoSuchElementException("The list is empty");
+        } else if (size == 1) {
+            return empty();
+        } else if (size - tailOffset() > 1) {
+            return new PersistentTagList<>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+
+        // The tail becomes empty, so the last leaf of the tree becomes the tail
+        Object[] newTail = arrayFor(size - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+
+        if (newRoot == null) {
+            newRoot = new Object[WIDTH];
+        } else if (shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+
+        return new PersistentTagList<>(size - 1, newShift, newRoot, newTail);
+    }
+
+    private Object[] popTail(int level, Object[] node) {
+        int i = ((size - 2) >>> level) & MASK;
+
+        if (level > BITS) {
+            Object[] child = popTail(level - BITS, (Object[]) node[i]);
+
+            if (child == null && i == 0) {
+                return null;
+            }
+
+            Object[] copy = node.clone();
+            copy[i] = child;
+            return copy;
+        } else if (i == 0) {
+            return null;
+        }
+
+        Object[] copy = node.clone();
+        copy[i] = null;
+        return copy;
+    }
+
+    /////////////////////////////
+    //   List implementation   //
+    /////////////////////////////
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+
+        return (T) arrayFor(index)[index & MASK];
+    }
+}
@@ -0,0 +1,480 @@
+package io.github.antiquitymc.nbt;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable backing map of compound tags that shares its structure with the maps derived from it.
+ *
+ * <p>The entries are stored in a compressed hash-array mapped prefix tree. Each node holds the entries
+ * and child nodes of up to 32 hash prefixes in a single array, indexed by two bitmaps.
+ * {@link #with} and {@link #without} copy only the nodes on the path to the changed entry.
+ * Entries are iterated in hash order.
+ *
+ * <p>All {@link Map} mutators throw {@link UnsupportedOperationException}.
+ */
+final class PersistentTagMap extends AbstractMap<String, Tag> {
+    static final PersistentTagMap EMPTY = new PersistentTagMap(BitmapNode.EMPTY, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    private final int size;
+
+    private PersistentTagMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Converts a tag to a persistent tag if it is a compound or a list.
+     *
+     * @param tag the tag
+     * @return the persistent tag, or the passed tag if it's immutable
+     */
+    static Tag toPersistent(Tag tag) {
+        if (tag instanceof CompoundTag) {
+            return ((CompoundTag) tag).toPersistent();
+        } else if (tag instanceof ListTag) {
+            return ((ListTag<?>) tag).toPersistent();
+        }
+
+        return tag;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns a map with an entry added or replaced.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the new map, or this map if the entry is already present
+     */
+    PersistentTagMap with(String key, Tag value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        boolean[] added = new boolean[1];
+        Node newRoot = root.with(key, value, hash(key), 0, added);
+
+        if (newRoot == root) {
+            return this;
+        }
+
+        return new PersistentTagMap(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map with an entry removed.
+     *
+     * @param key the key
+     * @return the new map, or this map if the key is not present
+     */
+    PersistentTagMap without(Object key) {
+        if (key == null) {
+            return this;
+        }
+
+        Node newRoot = root.without(key, hash(key), 0);
+        return newRoot == root ? this : new PersistentTagMap(newRoot, size - 1);
+    }
+
+    ////////////////////////////
+    //   Map implementation   //
+    ////////////////////////////
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Tag get(Object key) {
+        return key != null ? root.find(key, hash(key), 0) : null;
+    }
+
+    @Override
+    public Set<Entry<String, Tag>> entrySet() {
+        return new AbstractSet<Entry<String, Tag>>() {
+            @Override
+            public Iterator<Entry<String, Tag>> iterator() {
+                return new Itr(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private abstract static class Node {
+        abstract Tag find(Object key, int hash, int shift);
+
+        abstract Node with(String key, Tag value, int hash, int shift, boolean[] added);
+
+        abstract Node without(Object key, int hash, int shift);
+
+        abstract int entryCount();
+
+        abstract int childCount();
+
+        abstract String keyAt(int i);
+
+        abstract Tag valueAt(int i);
+
+        abstract Node childAt(int i);
+    }
+
+    /**
+     * A node that stores entries and child nodes by the next five bits of their hash.
+     *
+     * <p>The content array holds the keys and values of the entries in pairs, in the order of their bits,
+     * followed by the child nodes in reverse order of their bits.
+     */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, 0, new Object[0]);
+
+        private final int entryMap;
+        private final int childMap;
+        private final Object[] content;
+
+        BitmapNode(int entryMap, int childMap, Object[] content) {
+            this.entryMap = entryMap;
+            this.childMap = childMap;
+            this.content = content;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private int entryIndex(int bit) {
+            return Integer.bitCount(entryMap & (bit - 1));
+        }
+
+        private int childIndex(int bit) {
+            return content.length - 1 - Integer.bitCount(childMap & (bit - 1));
+        }
+
+        @Override
+        Tag find(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+
+            if ((entryMap & bit) != 0) {
+                int i = entryIndex(bit);
+                return key.equals(content[2 * i]) ? (Tag) content[2 * i + 1] : null;
+            } else if ((childMap & bit) != 0) {
+                return ((Node) content[childIndex(bit)]).find(key, hash, shift + BITS);
+            }
+
+            return null;
+        }
+
+        @Override
+        Node with(String key, Tag value, int hash, int shift, boolean[] added) {
+            int bit = bit(hash, shift);
+
+            if ((entryMap & bit) != 0) {
+                int i = entryIndex(bit);
+                String existingKey = (String) content[2 * i];
+
+                if (key.equals(existingKey)) {
+                    if (content[2 * i + 1] == value) {
+                        return this;
+                    }
+
+                    Object[] copy = content.clone();
+                    copy[2 * i + 1] = value;
+                    return new BitmapNode(entryMap, childMap, copy);
+                }
+
+                // Push both entries down into a new child node
+                Tag existingValue = (Tag) content[2 * i + 1];
+                Node child = merge(existingKey, existingValue, hash(existingKey), key, value, hash, shift + BITS);
+                added[0] = true;
+                return entryToChild(bit, i, child);
+            } else if ((childMap & bit) != 0) {
+                int index = childIndex(bit);
+                Node child = (Node) content[index];
+                Node newChild = child.with(key, value, hash, shift + BITS, added);
+
+                if (newChild == child) {
+                    return this;
+                }
+
+                Object[] copy = content.clone();
+                copy[index] = newChild;
+                return new BitmapNode(entryMap, childMap, copy);
+            }
+
+            int i = entryIndex(bit);
+            Object[] copy = new Object[content.length + 2];
+            System.arraycopy(content, 0, copy, 0, 2 * i);
+            copy[2 * i] = key;
+            copy[2 * i + 1] = value;
+            System.arraycopy(content, 2 * i, copy, 2 * i + 2, content.length - 2 * i);
+            added[0] = true;
+            return new BitmapNode(entryMap | bit, childMap, copy);
+        }
+
+        private static Node merge(String key1, Tag value1, int hash1, String key2, Tag value2, int hash2, int shift) {
+            if (shift >= Integer.SIZE) {
+                return new CollisionNode(new String[] { key1, key2 }, new Tag[] { value1, value2 });
+            }
+
+            int bit1 = bit(hash1, shift);
+            int bit2 = bit(hash2, shift);
+
+            if (bit1 == bit2) {
+                Node child = merge(key1, value1, hash1, key2, value2, hash2, shift + BITS);
+                return new BitmapNode(0, bit1, new Object[] { child });
+            }
+
+            return Integer.compareUnsigned(bit1, bit2) < 0
+                ? new BitmapNode(bit1 | bit2, 0, new Object[] { key1, value1, key2, value2 })
+                : new BitmapNode(bit1 | bit2, 0, new Object[] { key2, value2, key1, value1 });
+        }
+
+        private Node entryToChild(int bit, int i, Node child) {
+            // Remove the entry and insert the child, keeping the children in reverse bit order at the end
+            int childIndex = content.length - 2 - Integer.bitCount(childMap & (bit - 1));
+            Object[] copy = new Object[content.length - 1];
+            System.arraycopy(content, 0, copy, 0, 2 * i);
+            System.arraycopy(content, 2 * i + 2, copy, 2 * i, childIndex - 2 * i);
+            copy[childIndex] = child;
+            System.arraycopy(content, childIndex + 2, copy, childIndex + 1, content.length - childIndex - 2);
+            return new BitmapNode(entryMap ^ bit, childMap | bit, copy);
+        }
+
+        private Node childToEntry(int bit, int index, Node child) {
+            int i = entryIndex(bit);
+            Object[] copy = new Object[content.length + 1];
+            System.arraycopy(content, 0, copy, 0, 2 * i);
+            copy[2 * i] = child.keyAt(0);
+            copy[2 * i + 1] = child.valueAt(0);
+            System.arraycopy(content, 2 * i, copy, 2 * i + 2, index - 2 * i);
+            System.arraycopy(content, index + 1, copy, index + 2, content.length - index - 1);
+            return new BitmapNode(entryMap | bit, childMap ^ bit, copy);
+        }
+
+        @Override
+        Node without(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+
+            if ((entryMap & bit) != 0) {
+                int i = entryIndex(bit);
+
+                if (!key.equals(content[2 * i])) {
+                    return this;
+                }
+
+                Object[] copy = new Object[content.length - 2];
+                System.arraycopy(content, 0, copy, 0, 2 * i);
+                System.arraycopy(content, 2 * i + 2, copy, 2 * i, content.length - 2 * i - 2);
+                return new BitmapNode(entryMap ^ bit, childMap, copy);
+            } else if ((childMap & bit) != 0) {
+                int index = childIndex(bit);
+                Node child = (Node) content[index];
+                Node newChild = child.without(key, hash, shift + BITS);
+
+                if (newChild == child) {
+                    return this;
+                }
+
+                if (newChild.childCount() == 0 && newChild.entryCount() == 1) {
+                    // Keep the tree canonical by moving a lone entry up
+                    if (entryMap == 0 && childMap == bit) {
+                        String remainingKey = newChild.keyAt(0);
+                        return new BitmapNode(bit(hash(remainingKey), shift), 0, new Object[] { remainingKey, newChild.valueAt(0) });
+                    }
+
+                    return childToEntry(bit, index, newChild);
+                }
+
+                Object[] copy = content.clone();
+                copy[index] = newChild;
+                return new BitmapNode(entryMap, childMap, copy);
+            }
+
+            return this;
+        }
+
+        @Override
+        int entryCount() {
+            return Integer.bitCount(entryMap);
+        }
+
+        @Override
+        int childCount() {
+            return Integer.bitCount(childMap);
+        }
+
+        @Override
+        String keyAt(int i) {
+            return (String) content[2 * i];
+        }
+
+        @Override
+        Tag valueAt(int i) {
+            return (Tag) content[2 * i + 1];
+        }
+
+        @Override
+        Node childAt(int i) {
+            return (Node) content[content.length - 1 - i];
+        }
+    }
+
+    /**
+     * A node for keys whose hashes are fully equal.
+     */
+    private static final class CollisionNode extends Node {
+        private final String[] keys;
+        private final Tag[] values;
+
+        CollisionNode(String[] keys, Tag[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        Tag find(Object key, int hash, int shift) {
+            int i = indexOf(key);
+            return i >= 0 ? values[i] : null;
+        }
+
+        @Override
+        Node with(String key, Tag value, int hash, int shift, boolean[] added) {
+            int i = indexOf(key);
+
+            if (i >= 0) {
+                if (values[i] == value) {
+                    return this;
+                }
+
+                Tag[] newValues = values.clone();
+                newValues[i] = value;
+                return new CollisionNode(keys, newValues);
+            }
+
+            String[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+            Tag[] newValues = Arrays.copyOf(values, values.length + 1);
+            newKeys[keys.length] = key;
+            newValues[values.length] = value;
+            added[0] = true;
+            return new CollisionNode(newKeys, newValues);
+        }
+
+        @Override
+        Node without(Object key, int hash, int shift) {
+            int i = indexOf(key);
+
+            if (i < 0) {
+                return this;
+            }
+
+            String[] newKeys = new String[keys.length - 1];
+            Tag[] newValues = new Tag[values.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, newKeys.length - i);
+            System.arraycopy(values, 0, newValues, 0, i);
+            System.arraycopy(values, i + 1, newValues, i, newValues.length - i);
+            return new CollisionNode(newKeys, newValues);
+        }
+
+        @Override
+        int entryCount() {
+            return keys.length;
+        }
+
+        @Override
+        int childCount() {
+            return 0;
+        }
+
+        @Override
+        String keyAt(int i) {
+            return keys[i];
+        }
+
+        @Override
+        Tag valueAt(int i) {
+            return values[i];
+        }
+
+        @Override
+        Node childAt(int i) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Iterates over the entries of a node and then its children, depth first.
+     */
+    private static final class Itr implements Iterator<Entry<String, Tag>> {
+        private final Deque<Node> pending = new ArrayDeque<>();
+        private Node node;
+        private int next;
+
+        Itr(Node root) {
+            node = root;
+            advance();
+        }
+
+        private void advance() {
+            while (node != null && next >= node.entryCount()) {
+                for (int i = node.childCount() - 1; i >= 0; i--) {
+                    pending.push(node.childAt(i));
+                }
+
+                node = pending.poll();
+                next = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return node != null;
+        }
+
+        @Override
+        public Entry<String, Tag> next() {
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+
+            Entry<String, Tag> entry = new SimpleImmutableEntry<>(node.keyAt(next), node.valueAt(next));
+            next++;
+            advance();
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A deflater output stream that takes its deflater from the {@link ZlibPool} and returns it when closed.
+ */
+class PooledDeflaterOutputStream extends DeflaterOutputStream {
+    private final boolean nowrap;
+    private boolean released;
+
+    PooledDeflaterOutputStream(OutputStream out, int level, boolean nowrap) {
+        super(out, ZlibPool.acquireDeflater(level, nowrap), CompressionStreams.BUFFER_SIZE);
+        this.nowrap = nowrap;
+    }
+
+    /**
+     * Returns the deflater to the pool without closing the underlying stream.
+     */
+    void release() {
+        if (!released) {
+            released = true;
+            ZlibPool.release(def, nowrap);
+        }
+    }
+
+    /**
+     * Checks that the deflater has not been returned to the pool.
+     * Unlike the input side, {@link DeflaterOutputStream} has no check of its own.
+     */
+    void ensureOpen() throws IOException {
+        if (released) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        super.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        super.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        super.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        ensureOpen();
+        super.finish();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Once released, the pooled instance may already be used by another stream
+        if (!released) {
+            try {
+                super.close();
+            } finally {
+                release();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads gzip data with a pooled raw inflater, parsing the gzip header and trailer itself.
+ *
+ * <p>Like {@link java.util.zip.GZIPInputStream}, concatenated gzip members are read as one stream
+ * and anything after the last member that is not a gzip header is ignored.
+ */
+final class PooledGzipInputStream extends PooledInflaterInputStream {
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final CRC32 crc = new CRC32();
+    // Bytes after the end of the deflate data that were already read into the buffer
+    private int remainingStart;
+    private int remainingEnd;
+    private boolean eos;
+
+    PooledGzipInputStream(InputStream in) throws IOException {
+        super(in, true);
+
+        try {
+            readHeader();
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        while (!eos) {
+            int n = super.read(b, off, len);
+
+            if (n >= 0) {
+                crc.update(b, off, n);
+                return n;
+            }
+
+            if (readTrailer()) {
+                eos = true;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Reads the trailer of the current member and the header of the next one, if any.
+     *
+     * @return true if the end of the stream was reached
+     */
+    private boolean readTrailer() throws IOException {
+        remainingEnd = len;
+        remainingStart = len - inf.getRemaining();
+
+        if (readIntLE() != (int) crc.getValue() || readIntLE() != (int) inf.getBytesWritten()) {
+            throw new ZipException("Corrupt gzip trailer");
+        }
+
+        if (remainingStart == remainingEnd && in.available() <= 0) {
+            return true;
+        }
+
+        try {
+            readHeader();
+        } catch (IOException e) {
+            // Not another member
+            return true;
+        }
+
+        inf.reset();
+        crc.reset();
+
+        if (remainingStart < remainingEnd) {
+            inf.setInput(buf, remainingStart, remainingEnd - remainingStart);
+        }
+
+        return false;
+    }
+
+    private void readHeader() throws IOException {
+        CRC32 headerCrc = new CRC32();
+
+        if (readByte(headerCrc) != 0x1F || readByte(headerCrc) != 0x8B) {
+            throw new ZipException("Not in gzip format");
+        }
+
+        if (readByte(headerCrc) != Deflater.DEFLATED) {
+            throw new ZipException("Unsupported gzip compression method");
+        }
+
+        int flags = readByte(headerCrc);
+
+        // Modification time, extra flags and operating system
+        for (int i = 0; i < 6; i++) {
+            readByte(headerCrc);
+        }
+
+        if ((flags & FEXTRA) != 0) {
+            int length = readByte(headerCrc) | (readByte(headerCrc) << 8);
+
+            for (int i = 0; i < length; i++) {
+                readByte(headerCrc);
+            }
+        }
+
+        if ((flags & FNAME) != 0) {
+            while (readByte(headerCrc) != 0) {
+                // Skip the file name
+            }
+        }
+
+        if ((flags & FCOMMENT) != 0) {
+            while (readByte(headerCrc) != 0) {
+                // Skip the comment
+            }
+        }
+
+        if ((flags & FHCRC) != 0) {
+            int expected = (int) headerCrc.getValue() & 0xFFFF;
+
+            if ((readByte(null) | (readByte(null) << 8)) != expected) {
+                throw new ZipException("Corrupt gzip header");
+            }
+        }
+    }
+
+    private int readIntLE() throws IOException {
+        return readByte(null) | (readByte(null) << 8) | (readByte(null) << 16) | (readByte(null) << 24);
+    }
+
+    private int readByte(CRC32 headerCrc) throws IOException {
+        int b;
+
+        if (remainingStart < remainingEnd) {
+            b = buf[remainingStart++] & 0xFF;
+        } else if ((b = in.read()) < 0) {
+            throw new EOFException("Unexpected end of gzip stream");
+        }
+
+        if (headerCrc != null) {
+            headerCrc.update(b);
+        }
+
+        return b;
+    }
+}
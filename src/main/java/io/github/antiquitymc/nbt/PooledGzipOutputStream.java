@@ -0,0 +1,62 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes gzip data with a pooled raw deflater, framing it with the gzip header and trailer itself.
+ */
+final class PooledGzipOutputStream extends PooledDeflaterOutputStream {
+    private static final byte[] HEADER = {
+        0x1F, (byte) 0x8B, // magic
+        Deflater.DEFLATED, // compression method
+        0, // flags
+        0, 0, 0, 0, // modification time
+        0, // extra flags
+        0, // operating system, same as GZIPOutputStream
+    };
+
+    private final CRC32 crc = new CRC32();
+    private boolean finished;
+
+    PooledGzipOutputStream(OutputStream out, int level) throws IOException {
+        super(out, level, true);
+
+        try {
+            out.write(HEADER);
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        crc.update(b, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        ensureOpen();
+
+        if (!finished) {
+            finished = true;
+            super.finish();
+
+            byte[] trailer = new byte[8];
+            writeIntLE(trailer, 0, (int) crc.getValue());
+            writeIntLE(trailer, 4, (int) def.getBytesRead());
+            out.write(trailer);
+        }
+    }
+
+    private static void writeIntLE(byte[] bytes, int offset, int v) {
+        bytes[offset] = (byte) v;
+        bytes[offset + 1] = (byte) (v >>> 8);
+        bytes[offset + 2] = (byte) (v >>> 16);
+        bytes[offset + 3] = (byte) (v >>> 24);
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * An inflater input stream that takes its inflater from the {@link ZlibPool} and returns it when closed.
+ */
+class PooledInflaterInputStream extends InflaterInputStream {
+    private final boolean nowrap;
+    private boolean released;
+
+    PooledInflaterInputStream(InputStream in, boolean nowrap) {
+        super(in, ZlibPool.acquireInflater(nowrap), CompressionStreams.BUFFER_SIZE);
+        this.nowrap = nowrap;
+    }
+
+    /**
+     * Returns the inflater to the pool without closing the underlying stream.
+     */
+    void release() {
+        if (!released) {
+            released = true;
+            ZlibPool.release(inf, nowrap);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Once released, the pooled instance may already be used by another stream
+        if (!released) {
+            try {
+                super.close();
+            } finally {
+                release();
+            }
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A backing list of list tags that stores numeric elements in a primitive array.
+ *
+ * <p>Tag objects are only created when elements are requested through the {@link java.util.List} interface,
+ * and the elements are read and written in bulk. Elements of other types are rejected with a
+ * {@link ClassCastException}.
+ *
+ * @param <T> the element tag type
+ */
+abstract class PrimitiveTagList<T extends Tag> extends AbstractList<T> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 4;
+
+    int size;
+    // Whether the array is shared with a copy and must be copied before it is changed
+    boolean shared;
+    private ChangeTracker tracker;
+
+    /**
+     * Checks if a list tag with an element type can be backed by a primitive list.
+     *
+     * @param elementType the element type
+     * @return true if supported
+     */
+    static boolean supports(TagType elementType) {
+        return elementType == TagType.Standard.INT
+            || elementType == TagType.Standard.LONG
+            || elementType == TagType.Standard.FLOAT
+            || elementType == TagType.Standard.DOUBLE;
+    }
+
+    /**
+     * Creates an empty primitive list.
+     *
+     * @param elementType the element type, which must be {@linkplain #supports supported}
+     * @param capacity    the initial capacity
+     * @return the list
+     */
+    static PrimitiveTagList<?> create(TagType elementType, int capacity) {
+        switch ((TagType.Standard) elementType) {
+            case INT:
+                return new IntList(capacity);
+            case LONG:
+                return new LongList(capacity);
+            case FLOAT:
+                return new FloatList(capacity);
+            case DOUBLE:
+                return new DoubleList(capacity);
+            default:
+                throw new IllegalArgumentException("Unsupported element type: " + elementType);
+        }
+    }
+
+    static PrimitiveTagList<?> create(TagType elementType) {
+        return create(elementType, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Reads the elements of a list tag.
+     *
+     * @param elementType the element type, which must be {@linkplain #supports supported}
+     * @param input       the data input
+     * @param length      the number of elements
+     * @return the list
+     */
+    static PrimitiveTagList<?> read(TagType elementType, DataInput input, int length) throws IOException {
+        PrimitiveTagList<?> list = create(elementType, length);
+        list.readElements(input, length);
+        list.size = length;
+        return list;
+    }
+
+    abstract void readElements(DataInput input, int length) throws IOException;
+
+    /**
+     * Creates a copy of this list that shares the array with this list until either of them is changed.
+     *
+     * @return the copy
+     */
+    abstract PrimitiveTagList<T> copy();
+
+    final <L extends PrimitiveTagList<T>> L share(L copy) {
+        copy.size = size;
+        copy.shared = true;
+        shared = true;
+        return copy;
+    }
+
+    /**
+     * Gets the change tracker of this list, creating it if requested.
+     *
+     * @param create whether to create the tracker
+     * @return the tracker, or null if not created
+     */
+    final ChangeTracker tracker(boolean create) {
+        if (tracker == null && create) {
+            tracker = new ChangeTracker();
+        }
+
+        return tracker;
+    }
+
+    private void changed() {
+        if (tracker != null) {
+            tracker.changed();
+        }
+    }
+
+    private void unshare() {
+        if (shared) {
+            resize(capacity());
+            shared = false;
+        }
+    }
+
+    /**
+     * Writes the elements of this list, without the list tag header.
+     *
+     * @param output the data output
+     */
+    abstract void write(DataOutput output) throws IOException;
+
+    /**
+     * Gets the serialized size of each element.
+     *
+     * @return the size in bytes
+     */
+    abstract int elementSize();
+
+    abstract T element(int index);
+
+    abstract void store(int index, T element);
+
+    abstract int capacity();
+
+    abstract void resize(int capacity);
+
+    abstract void move(int from, int to, int count);
+
+    final void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    @Override
+    public final int size() {
+        return size;
+    }
+
+    @Override
+    public final T get(int index) {
+        checkIndex(index);
+        return element(index);
+    }
+
+    @Override
+    public final T set(int index, T element) {
+        checkIndex(index);
+        T old = element(index);
+        unshare();
+        store(index, element);
+        changed();
+        return old;
+    }
+
+    @Override
+    public final void add(int index, T element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+
+        if (size == capacity()) {
+            resize(Math.max(INITIAL_CAPACITY, size * 2));
+            shared = false;
+        } else {
+            unshare();
+        }
+
+        move(index, index + 1, size - index);
+        store(index, element);
+        size++;
+        modCount++;
+        changed();
+    }
+
+    @Override
+    public final T remove(int index) {
+        checkIndex(index);
+        T old = element(index);
+        unshare();
+        move(index + 1, index, size - index - 1);
+        size--;
+        modCount++;
+        changed();
+        return old;
+    }
+
+    @Override
+    protected final void removeRange(int fromIndex, int toIndex) {
+        unshare();
+        move(toIndex, fromIndex, size - toIndex);
+        size -= toIndex - fromIndex;
+        modCount++;
+        changed();
+    }
+
+    @Override
+    public final void clear() {
+        size = 0;
+        modCount++;
+        changed();
+    }
+
+    static final class IntList extends PrimitiveTagList<IntTag> {
+        private int[] values;
+
+        IntList(int capacity) {
+            values = new int[capacity];
+        }
+
+        private IntList(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        IntList copy() {
+            return share(new IntList(values));
+        }
+
+        int getInt(int index) {
+            checkIndex(index);
+            return values[index];
+        }
+
+        @Override
+        void readElements(DataInput input, int length) throws IOException {
+            NbtReader.readInts(input, values);
+        }
+
+        @Override
+        void write(DataOutput output) throws IOException {
+            NbtWriter.writeInts(output, values, 0, size);
+        }
+
+        @Override
+        int elementSize() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        IntTag element(int index) {
+            return IntTag.of(values[index]);
+        }
+
+        @Override
+        void store(int index, IntTag element) {
+            values[index] = element.getValue();
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void move(int from, int to, int count) {
+            System.arraycopy(values, from, values, to, count);
+        }
+    }
+
+    static final class LongList extends PrimitiveTagList<LongTag> {
+        private long[] values;
+
+        LongList(int capacity) {
+            values = new long[capacity];
+        }
+
+        private LongList(long[] values) {
+            this.values = values;
+        }
+
+        @Override
+        LongList copy() {
+            return share(new LongList(values));
+        }
+
+        long getLong(int index) {
+            checkIndex(index);
+            return values[index];
+        }
+
+        @Override
+        void readElements(DataInput input, int length) throws IOException {
+            NbtReader.readLongs(input, values);
+        }
+
+        @Override
+        void write(DataOutput output) throws IOException {
+            NbtWriter.writeLongs(output, values, 0, size);
+        }
+
+        @Override
+        int elementSize() {
+            return Long.BYTES;
+        }
+
+        @Override
+        LongTag element(int index) {
+            return new LongTag(values[index]);
+        }
+
+        @Override
+        void store(int index, LongTag element) {
+            values[index] = element.getValue();
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void move(int from, int to, int count) {
+            System.arraycopy(values, from, values, to, count);
+        }
+    }
+
+    static final class FloatList extends PrimitiveTagList<FloatTag> {
+        // The raw bits of the floats, so that they are read and written in bulk
+        private int[] values;
+
+        FloatList(int capacity) {
+            values = new int[capacity];
+        }
+
+        private FloatList(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        FloatList copy() {
+            return share(new FloatList(values));
+        }
+
+        float getFloat(int index) {
+            checkIndex(index);
+            return Float.intBitsToFloat(values[index]);
+        }
+
+        @Override
+        void readElements(DataInput input, int length) throws IOException {
+            NbtReader.readInts(input, values);
+        }
+
+        @Override
+        void write(DataOutput output) throws IOException {
+            NbtWriter.writeInts(output, values, 0, size);
+        }
+
+        @Override
+        int elementSize() {
+            return Float.BYTES;
+        }
+
+        @Override
+        FloatTag element(int index) {
+            return new FloatTag(Float.intBitsToFloat(values[index]));
+        }
+
+        @Override
+        void store(int index, FloatTag element) {
+            values[index] = Float.floatToRawIntBits(element.getValue());
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void move(int from, int to, int count) {
+            System.arraycopy(values, from, values, to, count);
+        }
+    }
+
+    static final class DoubleList extends PrimitiveTagList<DoubleTag> {
+        // The raw bits of the doubles, so that they are read and written in bulk
+        private long[] values;
+
+        DoubleList(int capacity) {
+            values = new long[capacity];
+        }
+
+        private DoubleList(long[] values) {
+            this.values = values;
+        }
+
+        @Override
+        DoubleList copy() {
+            return share(new DoubleList(values));
+        }
+
+        double getDouble(int index) {
+            checkIndex(index);
+            return Double.longBitsToDouble(values[index]);
+        }
+
+        @Override
+        void readElements(DataInput input, int length) throws IOException {
+            NbtReader.readLongs(input, values);
+        }
+
+        @Override
+        void write(DataOutput output) throws IOException {
+            NbtWriter.writeLongs(output, values, 0, size);
+        }
+
+        @Override
+        int elementSize() {
+            return Double.BYTES;
+        }
+
+        @Override
+        DoubleTag element(int index) {
+            return new DoubleTag(Double.longBitsToDouble(values[index]));
+        }
+
+        @Override
+        void store(int index, DoubleTag element) {
+            values[index] = Double.doubleToRawLongBits(element.getValue());
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void move(int from, int to, int count) {
+            System.arraycopy(values, from, values, to, count);
+        }
+    }
+}
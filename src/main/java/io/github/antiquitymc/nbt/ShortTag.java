@@ -5,12 +5,32 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 public final class ShortTag implements Tag {
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final ShortTag[] CACHE = new ShortTag[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new ShortTag((short) (i + CACHE_LOW));
+        }
+    }
+
     private final short value;
 
     public ShortTag(short value) {
         this.value = value;
     }
 
+    /**
+     * Gets a short tag for a value. Values from -128 to 1023 return a cached tag.
+     *
+     * @param value the value
+     * @return the tag
+     */
+    public static ShortTag of(short value) {
+        return value >= CACHE_LOW && value <= CACHE_HIGH ? CACHE[value - CACHE_LOW] : new ShortTag(value);
+    }
+
     public short getValue() {
         return value;
     }
@@ -25,8 +45,13 @@ public final class ShortTag implements Tag {
         output.writeShort(value);
     }
 
+    @Override
+    public long serializedSize() {
+        return Short.BYTES;
+    }
+
     public static ShortTag read(DataInput input) throws IOException {
-        return new ShortTag(input.readShort());
+        return of(input.readShort());
     }
 
     @Override
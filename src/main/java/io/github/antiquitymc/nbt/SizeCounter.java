@@ -0,0 +1,100 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A data output that discards everything written to it and only counts the bytes.
+ */
+final class SizeCounter implements DataOutput {
+    private long count;
+
+    /**
+     * Counts the bytes written by a tag.
+     *
+     * @param tag the tag
+     * @return the serialized size in bytes
+     */
+    static long count(Tag tag) {
+        SizeCounter counter = new SizeCounter();
+
+        try {
+            tag.write(counter);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return counter.count;
+    }
+
+    @Override
+    public void write(int b) {
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b) {
+        count += b.length;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        count += len;
+    }
+
+    @Override
+    public void writeBoolean(boolean v) {
+        count++;
+    }
+
+    @Override
+    public void writeByte(int v) {
+        count++;
+    }
+
+    @Override
+    public void writeShort(int v) {
+        count += Short.BYTES;
+    }
+
+    @Override
+    public void writeChar(int v) {
+        count += Character.BYTES;
+    }
+
+    @Override
+    public void writeInt(int v) {
+        count += Integer.BYTES;
+    }
+
+    @Override
+    public void writeLong(long v) {
+        count += Long.BYTES;
+    }
+
+    @Override
+    public void writeFloat(float v) {
+        count += Float.BYTES;
+    }
+
+    @Override
+    public void writeDouble(double v) {
+        count += Double.BYTES;
+    }
+
+    @Override
+    public void writeBytes(String s) {
+        count += s.length();
+    }
+
+    @Override
+    public void writeChars(String s) {
+        count += (long) s.length() * Character.BYTES;
+    }
+
+    @Override
+    public void writeUTF(String s) {
+        count += ModifiedUtf8.serializedSize(s);
+    }
+}
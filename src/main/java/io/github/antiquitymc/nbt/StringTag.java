@@ -31,6 +31,11 @@ public final class StringTag implements Tag {
         output.writeUTF(value);
     }
 
+    @Override
+    public long serializedSize() {
+        return ModifiedUtf8.serializedSize(value);
+    }
+
     public static StringTag read(DataInput input) throws IOException {
         return new StringTag(input.readUTF());
     }
@@ -17,4 +17,29 @@ public interface Tag {
      * @param output the data output
      */
     void write(DataOutput output) throws IOException;
+
+    /**
+     * Computes the number of bytes that {@link #write(DataOutput)} writes.
+     *
+     * <p>The built-in tags compute the size without encoding anything. The default implementation
+     * counts the bytes while writing this tag to an output that discards them.
+     *
+     * @return the size in bytes
+     */
+    default long serializedSize() {
+        return SizeCounter.count(this);
+    }
+
+    /**
+     * Creates a deep copy of this tag. Changes to the copy don't affect this tag, and vice versa.
+     *
+     * <p>Immutable tags return themselves, which is what the default implementation does.
+     * Mutable tags must override this method and return a tag of the same class.
+     * Compounds and lists share their contents with the copy until either of them is changed.
+     *
+     * @return the copy
+     */
+    default Tag copy() {
+        return this;
+    }
 }
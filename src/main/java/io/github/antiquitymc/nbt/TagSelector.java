@@ -0,0 +1,137 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Decodes only selected subtrees of a compound tag, skipping everything else by length.
+ *
+ * <p>A selector is built from key paths relative to the root compound,
+ * such as {@code Data.Time} or {@code Data.Player.Pos}.
+ * Each selected tag is decoded completely, and the compounds leading to it are decoded
+ * with only the selected entries. All other entries are skipped without being decoded.
+ *
+ * <p>Selectors are immutable and can be shared between threads.
+ */
+public final class TagSelector {
+    private static final Pattern SEPARATOR = Pattern.compile(".", Pattern.LITERAL);
+
+    private final Node root;
+
+    private TagSelector(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Creates a selector from dot-separated key paths.
+     *
+     * @param paths the key paths, such as {@code Data.Player.Pos}
+     * @return the selector
+     * @see #ofPaths(Collection) for keys that contain dots
+     */
+    public static TagSelector of(String... paths) {
+        Node root = new Node();
+
+        for (String path : paths) {
+            root.add(Arrays.asList(SEPARATOR.split(Objects.requireNonNull(path, "path"), -1)));
+        }
+
+        return new TagSelector(root);
+    }
+
+    /**
+     * Creates a selector from key paths that are already split into keys.
+     *
+     * @param paths the key paths
+     * @return the selector
+     */
+    public static TagSelector ofPaths(Collection<? extends List<String>> paths) {
+        Node root = new Node();
+
+        for (List<String> path : paths) {
+            root.add(Objects.requireNonNull(path, "path"));
+        }
+
+        return new TagSelector(root);
+    }
+
+    /**
+     * Reads a named tag, decoding only the selected subtrees of its compound.
+     * Tags of other types are decoded completely.
+     *
+     * @param input the data input
+     * @return the partially decoded tag
+     */
+    public NamedTag read(DataInput input) throws IOException {
+        TagType.Standard type = TagType.Standard.byId(input.readByte());
+        String name = NbtReader.readKey(input);
+        Tag tag = type == TagType.Standard.COMPOUND ? read(root, input) : type.read(input);
+        return new NamedTag(name, tag);
+    }
+
+    /**
+     * Reads the payload of a compound tag, decoding only the selected subtrees.
+     *
+     * @param input the data input
+     * @return the partially decoded compound
+     */
+    public CompoundTag readCompound(DataInput input) throws IOException {
+        return read(root, input);
+    }
+
+    private static CompoundTag read(Node node, DataInput input) throws IOException {
+        if (node.selected) {
+            return CompoundTag.read(input);
+        }
+
+        CompoundTag compound = new CompoundTag();
+        byte typeId;
+
+        while ((typeId = input.readByte()) != TagType.Standard.END.getId()) {
+            TagType.Standard type = TagType.Standard.byId(typeId);
+            String name = NbtReader.readKey(input);
+            Node child = node.children.get(name);
+
+            if (child == null) {
+                TagSkipper.skip(type, input);
+            } else if (child.selected) {
+                compound.put(name, type.read(input));
+            } else if (type == TagType.Standard.COMPOUND) {
+                compound.put(name, read(child, input));
+            } else {
+                // The path continues through a tag that has no keys
+                TagSkipper.skip(type, input);
+            }
+        }
+
+        return compound;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean selected;
+
+        void add(List<String> path) {
+            Node node = this;
+
+            for (String key : path) {
+                if (node.selected) {
+                    // A parent is already selected as a whole
+                    return;
+                }
+
+                node = node.children.computeIfAbsent(Objects.requireNonNull(key, "key"), it -> new Node());
+            }
+
+            node.selected = true;
+            node.children.clear();
+        }
+    }
+}
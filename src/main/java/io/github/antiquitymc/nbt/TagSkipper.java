@@ -0,0 +1,134 @@
+package io.github.antiquitymc.nbt;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Skips encoded tags by length without decoding them.
+ */
+final class TagSkipper {
+    private TagSkipper() {
+    }
+
+    /**
+     * Gets the encoded size of a tag type that always has the same size.
+     *
+     * @param type the tag type
+     * @return the size in bytes, or -1 if tags of the type vary in size
+     */
+    static int fixedSize(TagType.Standard type) {
+        switch (type) {
+            case END:
+                return 0;
+            case BYTE:
+                return Byte.BYTES;
+            case SHORT:
+                return Short.BYTES;
+            case INT:
+            case FLOAT:
+                return Integer.BYTES;
+            case LONG:
+            case DOUBLE:
+                return Long.BYTES;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Skips the payload of a tag.
+     *
+     * @param type  the type of the tag
+     * @param input the data input
+     */
+    static void skip(TagType.Standard type, DataInput input) throws IOException {
+        switch (type) {
+            case BYTE_ARRAY:
+                skipBytes(input, readLength(input));
+                break;
+            case STRING:
+                skipBytes(input, input.readUnsignedShort());
+                break;
+            case LIST:
+                TagType.Standard elementType = TagType.Standard.byId(input.readByte());
+                skipList(elementType, input.readInt(), input);
+                break;
+            case COMPOUND:
+                skipCompound(input);
+                break;
+            case INT_ARRAY:
+                skipBytes(input, (long) readLength(input) * Integer.BYTES);
+                break;
+            case LONG_ARRAY:
+                skipBytes(input, (long) readLength(input) * Long.BYTES);
+                break;
+            default:
+                skipBytes(input, fixedSize(type));
+                break;
+        }
+    }
+
+    /**
+     * Skips the remaining entries of a compound tag, including its end tag.
+     *
+     * @param input the data input
+     */
+    static void skipCompound(DataInput input) throws IOException {
+        byte typeId;
+
+        while ((typeId = input.readByte()) != TagType.Standard.END.getId()) {
+            TagType.Standard type = TagType.Standard.byId(typeId);
+            skipBytes(input, input.readUnsignedShort());
+            skip(type, input);
+        }
+    }
+
+    /**
+     * Skips elements of a list tag.
+     *
+     * @param elementType the element type of the list
+     * @param count       the number of elements to skip
+     * @param input       the data input
+     */
+    static void skipList(TagType.Standard elementType, int count, DataInput input) throws IOException {
+        int size = fixedSize(elementType);
+
+        if (size >= 0) {
+            skipBytes(input, (long) Math.max(count, 0) * size);
+        } else {
+            for (int i = 0; i < count; i++) {
+                skip(elementType, input);
+            }
+        }
+    }
+
+    /**
+     * Skips exactly {@code count} bytes.
+     *
+     * @throws EOFException if the end of the input is reached first
+     */
+    static void skipBytes(DataInput input, long count) throws IOException {
+        while (count > 0) {
+            int skipped = input.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+
+            if (skipped <= 0) {
+                // skipBytes may give up early without being at EOF, so make progress by reading
+                input.readByte();
+                skipped = 1;
+            }
+
+            count -= skipped;
+        }
+    }
+
+    private static int readLength(DataInput input) throws IOException {
+        int length = input.readInt();
+
+        if (length < 0) {
+            throw new IOException("Negative array length: " + length);
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.antiquitymc.nbt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A bounded pool of {@link Inflater} and {@link Deflater} instances, shared by all threads.
+ *
+ * <p>Released instances are reset and kept for reuse, so that their native zlib state is not
+ * allocated for every stream. Instances released while the pool is full are ended right away
+ * instead of waiting for them to be garbage collected.
+ */
+final class ZlibPool {
+    private static final int CAPACITY = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    // Raw deflate (nowrap) instances are used for gzip, wrapped ones for zlib
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(CAPACITY);
+    private static final BlockingQueue<Inflater> RAW_INFLATERS = new ArrayBlockingQueue<>(CAPACITY);
+    private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(CAPACITY);
+    private static final BlockingQueue<Deflater> RAW_DEFLATERS = new ArrayBlockingQueue<>(CAPACITY);
+
+    private ZlibPool() {
+    }
+
+    /**
+     * Takes an inflater from the pool, or creates one if the pool is empty.
+     *
+     * @param nowrap true for raw deflate data without the zlib header and checksum
+     * @return the inflater
+     */
+    static Inflater acquireInflater(boolean nowrap) {
+        Inflater inflater = (nowrap ? RAW_INFLATERS : INFLATERS).poll();
+        return inflater != null ? inflater : new Inflater(nowrap);
+    }
+
+    /**
+     * Returns an inflater to the pool. It must not be used afterwards.
+     *
+     * @param inflater the inflater
+     * @param nowrap   the value the inflater was acquired with
+     */
+    static void release(Inflater inflater, boolean nowrap) {
+        inflater.reset();
+
+        if (!(nowrap ? RAW_INFLATERS : INFLATERS).offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Takes a deflater from the pool, or creates one if the pool is empty.
+     *
+     * @param level  the deflate level
+     * @param nowrap true for raw deflate data without the zlib header and checksum
+     * @return the deflater
+     */
+    static Deflater acquireDeflater(int level, boolean nowrap) {
+        Deflater deflater = (nowrap ? RAW_DEFLATERS : DEFLATERS).poll();
+
+        if (deflater == null) {
+            return new Deflater(level, nowrap);
+        }
+
+        // The deflater has no pending input after a reset, so the level applies to all data
+        deflater.setLevel(level);
+        return deflater;
+    }
+
+    /**
+     * Returns a deflater to the pool. It must not be used afterwards.
+     *
+     * @param deflater the deflater
+     * @param nowrap   the value the deflater was acquired with
+     */
+    static void release(Deflater deflater, boolean nowrap) {
+        deflater.reset();
+
+        if (!(nowrap ? RAW_DEFLATERS : DEFLATERS).offer(deflater)) {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package io.github.antiquitymc.nbt.region;
+
+import io.github.antiquitymc.nbt.Compression;
+import io.github.antiquitymc.nbt.NamedTag;
+import io.github.antiquitymc.nbt.NbtReader;
+import io.github.antiquitymc.nbt.NbtWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * Reads and writes chunks in an Anvil region file ({@code .mca}).
+ *
+ * <p>A region file holds up to 32x32 chunks. It starts with a table of chunk locations
+ * and a table of chunk timestamps, each 4 KiB long, followed by the chunks in 4 KiB sectors.
+ * Each chunk is stored as a 4-byte length, a compression type byte and the compressed named tag.
+ *
+ * <p>Chunk coordinates can be given either relative to the region or as absolute chunk coordinates,
+ * since only their lowest 5 bits are used.
+ *
+ * <p>All methods are synchronized, so a region file can be shared between threads.
+ */
+public final class RegionFile implements Closeable {
+    private static final int COMPRESSION_GZIP = 1;
+    private static final int COMPRESSION_ZLIB = 2;
+    private static final int COMPRESSION_NONE = 3;
+    private static final int COMPRESSION_LZ4 = 4;
+
+    private static final int SECTOR_SIZE = 4096;
+    private static final int CHUNK_COUNT = 32 * 32;
+    private static final int HEADER_SECTORS = 2;
+    private static final int CHUNK_HEADER_SIZE = 5;
+    private static final int MAX_SECTOR_COUNT = 0xFF;
+
+    private final FileChannel channel;
+    private final int[] locations = new int[CHUNK_COUNT];
+    private final int[] timestamps = new int[CHUNK_COUNT];
+    private final BitSet usedSectors = new BitSet();
+
+    /**
+     * Opens a region file for reading and writing, creating it if it doesn't exist.
+     *
+     * @param path the path to the region file
+     */
+    public RegionFile(Path path) throws IOException {
+        this.channel = FileChannel.open(Objects.requireNonNull(path, "path"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            readHeader();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void readHeader() throws IOException {
+        long size = channel.size();
+
+        if (size < HEADER_SECTORS * SECTOR_SIZE) {
+            // New or truncated file: start with an empty header
+            channel.write(ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE - (int) size), size);
+        } else if (size % SECTOR_SIZE != 0) {
+            // Pad the file to a whole number of sectors
+            channel.write(ByteBuffer.allocate(SECTOR_SIZE - (int) (size % SECTOR_SIZE)), size);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+        readFully(header, 0);
+        ((Buffer) header).flip();
+        header.asIntBuffer().get(locations);
+        ((Buffer) header).position(SECTOR_SIZE);
+        header.asIntBuffer().get(timestamps);
+
+        usedSectors.set(0, HEADER_SECTORS);
+        long sectorCount = channel.size() / SECTOR_SIZE;
+
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            int offset = getSectorOffset(locations[i]);
+            int count = getSectorCount(locations[i]);
+
+            if (offset < HEADER_SECTORS || offset + count > sectorCount) {
+                // Invalid locations are treated as missing chunks
+                locations[i] = 0;
+            } else if (count > 0) {
+                usedSectors.set(offset, offset + count);
+            }
+        }
+    }
+
+    private static int getIndex(int x, int z) {
+        return (x & 31) + (z & 31) * 32;
+    }
+
+    private static int getSectorOffset(int location) {
+        return location >>> 8;
+    }
+
+    private static int getSectorCount(int location) {
+        return location & 0xFF;
+    }
+
+    /**
+     * Checks if a chunk is present in this region file.
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return true if the chunk is present
+     */
+    public synchronized boolean hasChunk(int x, int z) {
+        return locations[getIndex(x, z)] != 0;
+    }
+
+    /**
+     * Gets the time when a chunk was last written.
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return the timestamp in seconds since the epoch, or 0 if unknown
+     */
+    public synchronized int getTimestamp(int x, int z) {
+        return timestamps[getIndex(x, z)];
+    }
+
+    /**
+     * Reads a chunk without reading any other part of the file.
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return the chunk tag, or null if the chunk is not present
+     * @throws IOException if the chunk could not be read or uses an unsupported compression type
+     */
+    public synchronized NamedTag readChunk(int x, int z) throws IOException {
+        int location = locations[getIndex(x, z)];
+
+        if (location == 0) {
+            return null;
+        }
+
+        long position = (long) getSectorOffset(location) * SECTOR_SIZE;
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+        readFully(header, position);
+
+        int length = header.getInt(0) - 1;
+        int compressionType = header.get(4);
+
+        if (length < 0 || length + CHUNK_HEADER_SIZE > getSectorCount(location) * SECTOR_SIZE) {
+            throw new IOException("Invalid length " + (length + 1) + " for chunk at " + x + ", " + z);
+        }
+
+        byte[] data = new byte[length];
+        readFully(ByteBuffer.wrap(data), position + CHUNK_HEADER_SIZE);
+        return decode(data, compressionType);
+    }
+
+    private static NamedTag decode(byte[] data, int compressionType) throws IOException {
+        Compression compression = getCompression(compressionType);
+
+        if (compression == Compression.Standard.NONE) {
+            return NamedTag.read(new NbtReader(data));
+        }
+
+        try (InputStream in = compression.decompress(new ByteArrayInputStream(data))) {
+            return NamedTag.read(new NbtReader(in));
+        }
+    }
+
+    private static Compression getCompression(int compressionType) throws IOException {
+        switch (compressionType) {
+            case COMPRESSION_GZIP:
+                return Compression.Standard.GZIP;
+            case COMPRESSION_ZLIB:
+                return Compression.Standard.ZLIB;
+            case COMPRESSION_NONE:
+                return Compression.Standard.NONE;
+            case COMPRESSION_LZ4:
+                return Compression.Standard.LZ4;
+            default:
+                throw new IOException("Unsupported chunk compression type: " + compressionType);
+        }
+    }
+
+    private static int getCompressionType(Compression compression) {
+        Compression.Standard format = compression.getStandardEquivalent();
+
+        if (format == null) {
+            throw new IllegalArgumentException("Region files only support standard compression formats, found " + compression.getName());
+        }
+
+        switch (format) {
+            case GZIP:
+                return COMPRESSION_GZIP;
+            case ZLIB:
+                return COMPRESSION_ZLIB;
+            case LZ4:
+                return COMPRESSION_LZ4;
+            default:
+                return COMPRESSION_NONE;
+        }
+    }
+
+    /**
+     * Writes a chunk with zlib compression.
+     *
+     * @param x   the chunk x coordinate
+     * @param z   the chunk z coordinate
+     * @param tag the chunk tag
+     * @see #writeChunk(int, int, NamedTag, Compression)
+     */
+    public void writeChunk(int x, int z, NamedTag tag) throws IOException {
+        writeChunk(x, z, tag, Compression.Standard.ZLIB);
+    }
+
+    /**
+     * Writes a chunk.
+     *
+     * <p>The chunk is written in place if it fits in the sectors it currently occupies.
+     * Otherwise, it is moved to the first free run of sectors that is large enough,
+     * or to the end of the file.
+     *
+     * @param x           the chunk x coordinate
+     * @param z           the chunk z coordinate
+     * @param tag         the chunk tag
+     * @param compression the compression, which must have a {@linkplain Compression#getStandardEquivalent() standard format}
+     * @throws IOException if the compressed chunk is larger than 255 sectors
+     */
+    public void writeChunk(int x, int z, NamedTag tag, Compression compression) throws IOException {
+        int compressionType = getCompressionType(compression);
+
+        // Encode outside of the lock
+        NbtWriter writer;
+
+        if (compressionType == COMPRESSION_NONE) {
+            // The size is known up front, so the chunk is encoded into an exactly sized buffer
+            long size = Integer.BYTES + Byte.BYTES + tag.serializedSize();
+
+            if (size > MAX_SECTOR_COUNT * SECTOR_SIZE) {
+                throw new IOException("Chunk at " + x + ", " + z + " is too large: " + size + " bytes");
+            }
+
+            writer = new NbtWriter((int) size);
+            writer.writeInt(0); // length, filled in below
+            writer.writeByte(compressionType);
+            tag.write(writer);
+        } else {
+            writer = new NbtWriter();
+            writer.writeInt(0); // length, filled in below
+            writer.writeByte(compressionType);
+
+            try (OutputStream out = compression.compress(new WriterOutputStream(writer))) {
+                NbtWriter compressed = new NbtWriter(out);
+                tag.write(compressed);
+                compressed.flush();
+            }
+        }
+
+        byte[] data = writer.toByteArray();
+        ByteBuffer.wrap(data).putInt(0, data.length - Integer.BYTES);
+        writeChunk(x, z, data);
+    }
+
+    private synchronized void writeChunk(int x, int z, byte[] data) throws IOException {
+        int index = getIndex(x, z);
+        int location = locations[index];
+        int oldOffset = getSectorOffset(location);
+        int oldCount = getSectorCount(location);
+        int count = (data.length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+
+        if (count > MAX_SECTOR_COUNT) {
+            throw new IOException("Chunk at " + x + ", " + z + " is too large: " + data.length + " bytes");
+        }
+
+        int offset;
+        if (location != 0 && count <= oldCount) {
+            // Overwrite in place and release the sectors that are no longer needed
+            offset = oldOffset;
+            usedSectors.clear(offset + count, offset + oldCount);
+        } else {
+            if (location != 0) {
+                usedSectors.clear(oldOffset, oldOffset + oldCount);
+            }
+
+            offset = findFreeSectors(count);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(count * SECTOR_SIZE);
+        buffer.put(data);
+        ((Buffer) buffer).flip();
+        // Write the padding too so that the file stays a whole number of sectors
+        ((Buffer) buffer).limit(buffer.capacity());
+        writeFully(buffer, (long) offset * SECTOR_SIZE);
+
+        usedSectors.set(offset, offset + count);
+        setHeader(index, (offset << 8) | count, (int) (System.currentTimeMillis() / 1000L));
+    }
+
+    private int findFreeSectors(int count) {
+        int start = usedSectors.nextClearBit(HEADER_SECTORS);
+
+        while (true) {
+            int end = usedSectors.nextSetBit(start);
+
+            if (end < 0 || end - start >= count) {
+                return start;
+            }
+
+            start = usedSectors.nextClearBit(end);
+        }
+    }
+
+    /**
+     * Removes a chunk from this region file, freeing its sectors for other chunks.
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     */
+    public synchronized void deleteChunk(int x, int z) throws IOException {
+        int index = getIndex(x, z);
+        int location = locations[index];
+
+        if (location != 0) {
+            usedSectors.clear(getSectorOffset(location), getSectorOffset(location) + getSectorCount(location));
+            setHeader(index, 0, 0);
+        }
+    }
+
+    private void setHeader(int index, int location, int timestamp) throws IOException {
+        locations[index] = location;
+        timestamps[index] = timestamp;
+
+        ByteBuffer entry = ByteBuffer.allocate(Integer.BYTES);
+        entry.putInt(0, location);
+        writeFully(entry, (long) index * Integer.BYTES);
+        entry.putInt(0, timestamp);
+        ((Buffer) entry).clear();
+        writeFully(entry, SECTOR_SIZE + (long) index * Integer.BYTES);
+    }
+
+    /**
+     * Reads every chunk that is present in this region file, in the order of the location table.
+     *
+     * @param visitor the visitor that receives the chunks
+     */
+    public synchronized void forEachChunk(ChunkVisitor visitor) throws IOException {
+        for (int z = 0; z < 32; z++) {
+            for (int x = 0; x < 32; x++) {
+                if (locations[getIndex(x, z)] != 0) {
+                    visitor.visit(x, z, readChunk(x, z));
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+
+            if (read < 0) {
+                throw new EOFException();
+            }
+
+            position += read;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Receives the chunks of a region file.
+     */
+    @FunctionalInterface
+    public interface ChunkVisitor {
+        /**
+         * Receives a chunk.
+         *
+         * @param x   the chunk x coordinate relative to the region
+         * @param z   the chunk z coordinate relative to the region
+         * @param tag the chunk tag
+         */
+        void visit(int x, int z, NamedTag tag) throws IOException;
+    }
+
+    /**
+     * Adapts an in-memory {@link NbtWriter} as the target of compression streams.
+     */
+    private static final class WriterOutputStream extends OutputStream {
+        private final NbtWriter writer;
+
+        WriterOutputStream(NbtWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            writer.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writer.write(b, off, len);
+        }
+    }
+}
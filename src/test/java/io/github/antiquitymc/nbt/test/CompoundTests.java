@@ -0,0 +1,299 @@
+package io.github.antiquitymc.nbt.test;
+
+import io.github.antiquitymc.nbt.BooleanTag;
+import io.github.antiquitymc.nbt.ByteArrayTag;
+import io.github.antiquitymc.nbt.ByteTag;
+import io.github.antiquitymc.nbt.CompoundTag;
+import io.github.antiquitymc.nbt.IntArrayTag;
+import io.github.antiquitymc.nbt.IntTag;
+import io.github.antiquitymc.nbt.ListTag;
+import io.github.antiquitymc.nbt.NamedTag;
+import io.github.antiquitymc.nbt.NbtIo;
+import io.github.antiquitymc.nbt.NbtReader;
+import io.github.antiquitymc.nbt.NbtWriter;
+import io.github.antiquitymc.nbt.ShortTag;
+import io.github.antiquitymc.nbt.StringTag;
+import io.github.antiquitymc.nbt.Tag;
+import io.github.antiquitymc.nbt.TagType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompoundTests {
+    @Test
+    void primitiveValues() {
+        CompoundTag tag = new CompoundTag();
+        tag.putByte("Byte", (byte) -1);
+        tag.putShort("Short", (short) 300);
+        tag.putInt("Int", 123456);
+        tag.putLong("Long", Long.MIN_VALUE);
+        tag.putFloat("Float", 1.5f);
+        tag.putDouble("Double", Double.NaN);
+        tag.putBoolean("Boolean", true);
+        tag.putChar("Char", '\u00E9');
+        tag.putString("String", "value");
+
+        assertEquals(-1, tag.getByte("Byte"));
+        assertEquals(300, tag.getShort("Short"));
+        assertEquals(123456, tag.getInt("Int"));
+        assertEquals(Long.MIN_VALUE, tag.getLong("Long"));
+        assertEquals(1.5f, tag.getFloat("Float"));
+        assertTrue(Double.isNaN(tag.getDouble("Double")));
+        assertTrue(tag.getBoolean("Boolean"));
+        assertEquals('\u00E9', tag.getChar("Char"));
+        assertEquals("value", tag.getString("String"));
+
+        // Conversions and type checks work like with tag objects
+        assertTrue(tag.getBoolean("Byte"));
+        assertEquals((char) 300, tag.getChar("Short"));
+        assertThrows(ClassCastException.class, () -> tag.getInt("Long"));
+        assertThrows(ClassCastException.class, () -> tag.getByte("Boolean"));
+        assertThrows(ClassCastException.class, () -> tag.getBoolean("Int"));
+        assertThrows(NoSuchElementException.class, () -> tag.getInt("Missing"));
+        assertEquals(7, tag.getInt("Missing", 7));
+
+        // Tag objects are created on demand
+        assertEquals(new IntTag(123456), tag.get("Int"));
+        assertEquals(new BooleanTag(true), tag.get("Boolean"));
+        assertEquals(new ByteTag((byte) -1), tag.put("Byte", new ByteTag((byte) 2)));
+        assertEquals(2, tag.getByte("Byte"));
+
+        Map<String, Tag> expected = new HashMap<>();
+        for (Map.Entry<String, Tag> entry : tag.entrySet()) {
+            expected.put(entry.getKey(), entry.getValue());
+        }
+
+        assertEquals(expected, tag);
+        assertEquals(tag, new CompoundTag(expected));
+        assertEquals(new CompoundTag(expected).hashCode(), tag.hashCode());
+    }
+
+    @Test
+    void insertionOrder() throws Exception {
+        CompoundTag tag = new CompoundTag();
+        List<String> keys = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            keys.add("Key" + (i * 7 % 20));
+            tag.putInt(keys.get(i), i);
+        }
+
+        assertEquals(keys, new ArrayList<>(tag.keySet()));
+
+        // Replacing keeps the position, removing shifts the following entries
+        tag.put("Key0", new StringTag("replaced"));
+        tag.remove(keys.get(5));
+        keys.remove(5);
+        assertEquals(keys, new ArrayList<>(tag.keySet()));
+        assertEquals("replaced", tag.getString("Key0"));
+        assertEquals(19, tag.getInt(keys.get(18)));
+
+        Iterator<Map.Entry<String, Tag>> iterator = tag.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Tag> entry = iterator.next();
+
+            if (entry.getKey().endsWith("1")) {
+                iterator.remove();
+            } else if (entry.getKey().equals("Key2")) {
+                entry.setValue(new IntTag(-2));
+            }
+        }
+
+        assertFalse(tag.containsKey("Key1"));
+        assertFalse(tag.containsKey("Key11"));
+        assertEquals(-2, tag.getInt("Key2"));
+        assertNull(tag.get("Key1"));
+
+        // The written order is the insertion order
+        NbtWriter writer = new NbtWriter();
+        new NamedTag("", tag).write(writer);
+        CompoundTag read = (CompoundTag) NamedTag.read(new NbtReader(writer.toByteArray())).getTag();
+        assertEquals(tag, read);
+        assertEquals(new ArrayList<>(tag.keySet()), new ArrayList<>(read.keySet()));
+
+        tag.keySet().removeAll(Arrays.asList("Key2", "Key3"));
+        assertEquals(tag.size(), read.size() - 2);
+        tag.clear();
+        assertTrue(tag.isEmpty());
+    }
+
+    @Test
+    void hashedLookup() {
+        CompoundTag tag = new CompoundTag();
+
+        // "Aa" and "BB" have the same hash code
+        for (int i = 0; i < 100; i++) {
+            tag.putInt("Aa" + i, i);
+            tag.putInt("BB" + i, -i);
+        }
+
+        assertEquals(200, tag.size());
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, tag.getInt("Aa" + i));
+            assertEquals(-i, tag.getInt("BB" + i));
+        }
+
+        for (int i = 0; i < 100; i += 2) {
+            tag.remove("Aa" + i);
+        }
+
+        assertEquals(150, tag.size());
+        assertFalse(tag.containsKey("Aa0"));
+        assertFalse(tag.containsKey(null));
+        assertEquals(99, tag.getInt("Aa99"));
+        assertEquals(-98, tag.getInt("BB98"));
+        assertEquals("BB0", tag.keySet().iterator().next());
+    }
+
+    @Test
+    void deepCopy() {
+        CompoundTag child = new CompoundTag();
+        child.putInt("Count", 1);
+        ListTag<IntTag> ints = new ListTag<>(TagType.Standard.INT);
+        ints.add(new IntTag(1));
+        ListTag<StringTag> strings = new ListTag<>(TagType.Standard.STRING);
+        strings.add(new StringTag("a"));
+        StringTag name = new StringTag("name");
+
+        CompoundTag original = new CompoundTag();
+        original.put("Child", child);
+        original.put("Ints", ints);
+        original.put("Strings", strings);
+        original.put("Bytes", new ByteArrayTag(new byte[] { 1, 2 }));
+        original.put("Name", name);
+        original.putLong("Long", 5);
+
+        CompoundTag copy = original.copy();
+        assertEquals(original, copy);
+        assertSame(name, copy.get("Name"));
+
+        // Changes to the copy don't affect the original
+        copy.putLong("Long", 6);
+        ((CompoundTag) copy.get("Child")).putInt("Count", 2);
+        @SuppressWarnings("unchecked")
+        ListTag<IntTag> copiedInts = (ListTag<IntTag>) copy.get("Ints");
+        copiedInts.add(new IntTag(2));
+        ((ByteArrayTag) copy.get("Bytes")).getValue()[0] = 9;
+        assertEquals(5, original.getLong("Long"));
+        assertEquals(1, child.getInt("Count"));
+        assertEquals(1, ints.size());
+        assertEquals(1, ((ByteArrayTag) original.get("Bytes")).getValue()[0]);
+
+        // And vice versa, even through tags obtained before copying
+        CompoundTag second = original.copy();
+        child.putInt("Count", 3);
+        ints.set(0, new IntTag(-1));
+        strings.add(new StringTag("b"));
+        original.remove("Name");
+        assertEquals(1, second.getSubTag("Child").getInt("Count"));
+        assertEquals(new IntTag(1), ((ListTag<?>) second.get("Ints")).get(0));
+        assertEquals(1, ((ListTag<?>) second.get("Strings")).size());
+        assertTrue(second.containsKey("Name"));
+
+        // Persistent tags are immutable, and only their arrays are copied
+        CompoundTag persistent = original.toPersistent();
+        CompoundTag persistentCopy = persistent.copy();
+        assertEquals(persistent, persistentCopy);
+        assertSame(persistent.get("Child"), persistentCopy.get("Child"));
+        ((ByteArrayTag) persistentCopy.get("Bytes")).getValue()[0] = 9;
+        assertEquals(1, ((ByteArrayTag) persistent.get("Bytes")).getValue()[0]);
+
+        persistent = persistent.without("Bytes");
+        assertSame(persistent, persistent.copy());
+
+        ListTag<IntArrayTag> arrays = new ListTag<IntArrayTag>(TagType.Standard.INT_ARRAY).withAdded(new IntArrayTag(new int[] { 1 }));
+        arrays.copy().get(0).getValue()[0] = 2;
+        assertEquals(1, arrays.get(0).getValue()[0]);
+    }
+
+    @Test
+    void concurrent() throws Exception {
+        CompoundTag levelDat = (CompoundTag) NbtIo.readGzipped(CompoundTests.class.getResourceAsStream("/level.dat")).getTag();
+        CompoundTag tag = levelDat.toConcurrent();
+        assertEquals(levelDat, tag);
+        assertTrue(tag.isConcurrent());
+        assertTrue(tag.getSubTag("Data").isConcurrent());
+        assertSame(tag, tag.toConcurrent());
+
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<CompoundTag>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                CompoundTag created = null;
+
+                for (int i = 0; i < 1000; i++) {
+                    tag.compute("Counter", (key, value) -> new IntTag(value == null ? 1 : ((IntTag) value).getValue() + 1));
+                    tag.putInt("Thread" + thread, i);
+                    created = tag.getOrCreateSubTag("Shared");
+
+                    // Iterating while other threads change the compound works on a snapshot
+                    int size = 0;
+                    for (Map.Entry<String, Tag> ignored : tag.entrySet()) {
+                        size++;
+                    }
+
+                    assertTrue(size >= levelDat.size());
+                }
+
+                return created;
+            }));
+        }
+
+        CompoundTag shared = null;
+        for (Future<CompoundTag> future : futures) {
+            CompoundTag created = future.get();
+            assertSame(created, shared == null ? created : shared);
+            shared = created;
+        }
+
+        executor.shutdown();
+        assertEquals(threads * 1000, tag.getInt("Counter"));
+        assertEquals(999, tag.getInt("Thread0"));
+        assertTrue(shared.isConcurrent());
+
+        NbtWriter writer = new NbtWriter();
+        new NamedTag("", tag).write(writer);
+        assertEquals(tag, NamedTag.read(new NbtReader(writer.toByteArray())).getTag());
+    }
+
+    @Test
+    void flyweights() throws Exception {
+        CompoundTag tag = new CompoundTag();
+        tag.putByte("Byte", (byte) -128);
+        tag.putShort("Short", (short) 1023);
+        tag.putInt("Int", -128);
+        tag.putInt("LargeInt", 1024);
+        tag.putBoolean("Boolean", false);
+
+        NbtWriter writer = new NbtWriter();
+        new NamedTag("", tag).write(writer);
+        CompoundTag read = (CompoundTag) NamedTag.read(new NbtReader(writer.toByteArray())).getTag();
+
+        assertSame(ByteTag.of((byte) -128), read.get("Byte"));
+        assertSame(ShortTag.of((short) 1023), read.get("Short"));
+        assertSame(IntTag.of(-128), read.get("Int"));
+        assertEquals(IntTag.of(1024), read.get("LargeInt"));
+        assertSame(BooleanTag.FALSE, read.get("Boolean", TagType.Antiquity.BOOLEAN));
+        assertSame(BooleanTag.TRUE, BooleanTag.of(true));
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.antiquitymc.nbt.test;
+
+import io.github.antiquitymc.nbt.CompoundTag;
+import io.github.antiquitymc.nbt.IntTag;
+import io.github.antiquitymc.nbt.ListTag;
+import io.github.antiquitymc.nbt.NamedTag;
+import io.github.antiquitymc.nbt.NbtDiff;
+import io.github.antiquitymc.nbt.NbtIo;
+import io.github.antiquitymc.nbt.NbtReader;
+import io.github.antiquitymc.nbt.StringTag;
+import io.github.antiquitymc.nbt.Tag;
+import io.github.antiquitymc.nbt.TagType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiffTests {
+    @Test
+    void compoundPatch() throws Exception {
+        CompoundTag from = (CompoundTag) NbtIo.readGzipped(DiffTests.class.getResourceAsStream("/level.dat")).getTag();
+        CompoundTag to = from.copy();
+        CompoundTag data = (CompoundTag) to.get("Data");
+        data.putLong("Time", data.getLong("Time") + 20);
+        data.putString("Added", "value");
+        data.remove("raining");
+        data.getOrCreateSubTag("Nested").putInt("Key", 1);
+
+        CompoundTag patch = NbtDiff.diff(from, to);
+        assertTrue(patch.serializedSize() < to.serializedSize());
+        assertTrue(NbtDiff.diff(to, to.copy()).isEmpty());
+
+        // Patches survive a round trip through NBT
+        NamedTag written = new NamedTag("", patch);
+        CompoundTag read = (CompoundTag) NamedTag.read(new NbtReader(NbtIo.toByteArray(written))).getTag();
+
+        CompoundTag target = from.copy();
+        NbtDiff.apply(target, read);
+        assertEquals(to, target);
+        assertNotEquals(to, from);
+
+        // Applied values are copies
+        ((CompoundTag) target.get("Data")).getSubTag("Nested").putInt("Key", 2);
+        assertEquals(1, data.getSubTag("Nested").getInt("Key"));
+    }
+
+    @Test
+    void listPatch() {
+        ListTag<IntTag> from = new ListTag<>(TagType.Standard.INT);
+        for (int i = 0; i < 100; i++) {
+            from.add(new IntTag(i));
+        }
+
+        // Insertion in the middle
+        ListTag<IntTag> inserted = from.copy();
+        inserted.add(50, new IntTag(-1));
+        assertPatches(from, inserted);
+        assertEquals(1, ((ListTag<?>) NbtDiff.diff(from, inserted).get("Splices")).size());
+
+        // Removal at the start and the end
+        ListTag<IntTag> removed = from.copy();
+        removed.remove(99);
+        removed.remove(0);
+        assertPatches(from, removed);
+        assertPatches(removed, from);
+
+        // Scattered changes in place
+        ListTag<IntTag> changed = from.copy();
+        Random random = new Random(0);
+        for (int i = 0; i < 10; i++) {
+            changed.set(random.nextInt(100), new IntTag(random.nextInt()));
+        }
+        assertPatches(from, changed);
+        assertPatches(from, new ListTag<>(TagType.Standard.INT));
+
+        ListTag<StringTag> strings = new ListTag<>(TagType.Standard.STRING);
+        assertThrows(IllegalArgumentException.class, () -> NbtDiff.diff(from, strings));
+    }
+
+    @Test
+    void nestedListPatch() {
+        ListTag<CompoundTag> from = new ListTag<>(TagType.Standard.COMPOUND);
+        for (int i = 0; i < 20; i++) {
+            CompoundTag entity = new CompoundTag();
+            entity.putString("id", "minecraft:zombie");
+            entity.putInt("Index", i);
+            entity.putString("CustomName", "A zombie with a long enough name");
+            from.add(entity);
+        }
+
+        ListTag<CompoundTag> to = from.copy();
+        to.get(3).putInt("Index", -3);
+        to.get(4).putInt("Index", -4);
+
+        CompoundTag patch = NbtDiff.diff(from, to);
+        assertEquals(2, ((ListTag<?>) patch.get("Patches")).size());
+        assertPatches(from, to);
+
+        // Patches don't apply to lists without the patched elements
+        assertThrows(IllegalArgumentException.class, () -> NbtDiff.apply(new ListTag<>(TagType.Standard.COMPOUND), patch));
+    }
+
+    private static <T extends Tag> void assertPatches(ListTag<T> from, ListTag<T> to) {
+        ListTag<T> target = from.copy();
+        NbtDiff.apply(target, NbtDiff.diff(from, to));
+        assertEquals(to, target);
+    }
+}
@@ -1,17 +1,59 @@
 package io.github.antiquitymc.nbt.test;
 
+import io.github.antiquitymc.nbt.BooleanTag;
+import io.github.antiquitymc.nbt.ByteArrayTag;
+import io.github.antiquitymc.nbt.CharTag;
 import io.github.antiquitymc.nbt.CompoundTag;
+import io.github.antiquitymc.nbt.Compression;
+import io.github.antiquitymc.nbt.IntArrayTag;
 import io.github.antiquitymc.nbt.IntTag;
+import io.github.antiquitymc.nbt.KeyCache;
 import io.github.antiquitymc.nbt.ListTag;
+import io.github.antiquitymc.nbt.LongArrayTag;
 import io.github.antiquitymc.nbt.NamedTag;
 import io.github.antiquitymc.nbt.NbtIo;
+import io.github.antiquitymc.nbt.NbtReader;
+import io.github.antiquitymc.nbt.NbtWriter;
+import io.github.antiquitymc.nbt.StringTag;
+import io.github.antiquitymc.nbt.Tag;
 import io.github.antiquitymc.nbt.TagType;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class IoTests {
     @Test
@@ -19,6 +61,22 @@ class IoTests {
         NbtIo.readGzipped(IoTests.class.getResourceAsStream("/level.dat"));
     }
 
+    @Test
+    void readerMatchesDataInputStream() throws Exception {
+        NamedTag expected;
+        try (InputStream in = new GZIPInputStream(IoTests.class.getResourceAsStream("/level.dat"))) {
+            expected = NamedTag.read(new DataInputStream(in));
+        }
+
+        NamedTag actual;
+        try (InputStream in = new GZIPInputStream(IoTests.class.getResourceAsStream("/level.dat"))) {
+            // A tiny buffer forces refills in the middle of primitives
+            actual = NamedTag.read(new NbtReader(in, 8));
+        }
+
+        assertEquals(expected, actual);
+    }
+
     @Test
     void roundtrip() throws Exception {
         CompoundTag tag = new CompoundTag();
@@ -39,4 +97,470 @@ class IoTests {
 
         assertEquals(written, read);
     }
+
+    @Test
+    void writerMatchesDataOutputStream() throws Exception {
+        NamedTag tag = NbtIo.readGzipped(IoTests.class.getResourceAsStream("/level.dat"));
+        ((CompoundTag) tag.getTag()).putString("Unicode", "\0 \u00E9 \u20AC \uD83D\uDE00");
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        tag.write(new DataOutputStream(expected));
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        // A tiny buffer forces flushes in the middle of the data
+        NbtWriter writer = new NbtWriter(streamed, 8);
+        tag.write(writer);
+        writer.flush();
+
+        NbtWriter inMemory = new NbtWriter(8);
+        tag.write(inMemory);
+
+        assertArrayEquals(expected.toByteArray(), streamed.toByteArray());
+        assertArrayEquals(expected.toByteArray(), inMemory.toByteArray());
+    }
+
+    @Test
+    void gzippedRoundtrip() throws Exception {
+        NamedTag written = NbtIo.readGzipped(IoTests.class.getResourceAsStream("/level.dat"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtIo.writeGzipped(out, written);
+        NamedTag read = NbtIo.readGzipped(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(written, read);
+    }
+
+    @Test
+    void arrayRoundtrip() throws Exception {
+        Random random = new Random(1234);
+        byte[] bytes = new byte[10000];
+        int[] ints = new int[5001];
+        long[] longs = new long[4096];
+        random.nextBytes(bytes);
+        for (int i = 0; i < ints.length; i++) ints[i] = random.nextInt();
+        for (int i = 0; i < longs.length; i++) longs[i] = random.nextLong();
+
+        CompoundTag tag = new CompoundTag();
+        tag.put("Bytes", new ByteArrayTag(bytes));
+        tag.put("Ints", new IntArrayTag(ints));
+        tag.put("Longs", new LongArrayTag(longs));
+        NamedTag written = new NamedTag("", tag);
+
+        // Bulk writes, generic reads
+        NbtWriter inMemory = new NbtWriter();
+        written.write(inMemory);
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        NbtWriter writer = new NbtWriter(streamed, 12);
+        written.write(writer);
+        writer.flush();
+        assertArrayEquals(inMemory.toByteArray(), streamed.toByteArray());
+        assertEquals(written, NamedTag.read(new DataInputStream(new ByteArrayInputStream(inMemory.toByteArray()))));
+
+        // Generic writes, bulk reads
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        written.write(new DataOutputStream(out));
+        assertArrayEquals(out.toByteArray(), inMemory.toByteArray());
+        assertEquals(written, NamedTag.read(new NbtReader(new ByteArrayInputStream(out.toByteArray()), 12)));
+        assertEquals(written, NamedTag.read(new NbtReader(out.toByteArray())));
+    }
+
+    @Test
+    void keyCacheSharesKeys() throws Exception {
+        KeyCache cache = new KeyCache();
+        NamedTag first = NbtIo.readGzipped(IoTests.class.getResourceAsStream("/level.dat"), cache);
+        NamedTag second = NbtIo.readGzipped(IoTests.class.getResourceAsStream("/level.dat"), cache);
+
+        assertEquals(first, second);
+        String firstKey = ((CompoundTag) first.getTag()).keySet().iterator().next();
+        String secondKey = ((CompoundTag) second.getTag()).keySet().iterator().next();
+        assertSame(firstKey, secondKey);
+
+        CompoundTag unicode = new CompoundTag();
+        unicode.putInt("\0 \u00E9 \u20AC \uD83D\uDE00", 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtIo.write(out, new NamedTag("", unicode));
+        assertEquals(unicode, NbtIo.read(new ByteArrayInputStream(out.toByteArray()), cache).getTag());
+
+        // Keys that are longer than the buffer
+        CompoundTag longKeys = new CompoundTag();
+        longKeys.putInt("short", 1);
+        longKeys.putInt("a key that is longer than the buffer", 2);
+        longKeys.putInt(String.join("", Collections.nCopies(64, "k")), 3);
+        NamedTag tag = new NamedTag("", longKeys);
+        NbtReader reader = new NbtReader(new ByteArrayInputStream(NbtIo.toByteArray(tag)), 8);
+        reader.setKeyCache(cache);
+        assertEquals(tag, NamedTag.read(reader));
+    }
+
+    @Test
+    void modifiedUtf8MatchesDataStreams() throws Exception {
+        StringBuilder longAscii = new StringBuilder();
+        StringBuilder longMixed = new StringBuilder();
+        for (int i = 0; i < 30000; i++) {
+            longAscii.append((char) ('a' + i % 26));
+            longMixed.append((char) (i * 7));
+        }
+
+        String[] strings = { "", "id", "minecraft:stone", "\0", "caf\u00E9", "\u20AC\uFFFF", "\uD83D\uDE00 x", longAscii.toString(), longMixed.substring(0, 16000) };
+
+        for (String string : strings) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            new DataOutputStream(expected).writeUTF(string);
+
+            NbtWriter writer = new NbtWriter();
+            writer.writeUTF(string);
+            assertArrayEquals(expected.toByteArray(), writer.toByteArray());
+
+            assertEquals(string, new NbtReader(expected.toByteArray()).readUTF());
+            assertEquals(string, new NbtReader(new ByteArrayInputStream(expected.toByteArray()), 16).readUTF());
+        }
+
+        assertThrows(UTFDataFormatException.class, () -> new NbtWriter().writeUTF(longMixed.toString()));
+        assertThrows(UTFDataFormatException.class, () -> new NbtReader(new byte[] { 0, 2, (byte) 0xC3, 0x41 }).readUTF());
+        assertThrows(UTFDataFormatException.class, () -> new NbtReader(new byte[] { 0, 1, (byte) 0xC3 }).readUTF());
+    }
+
+    @Test
+    void readPath(@TempDir Path dir) throws Exception {
+        NamedTag levelDat = NbtIo.readGzipped(IoTests.class.getResourceAsStream("/level.dat"));
+        CompoundTag large = new CompoundTag();
+        large.put("Longs", new LongArrayTag(new long[100_000]));
+        NamedTag largeTag = new NamedTag("Large", large);
+
+        Path gzipped = dir.resolve("gzipped.dat");
+        Path small = dir.resolve("small.dat");
+        Path mapped = dir.resolve("mapped.dat");
+
+        try (OutputStream out = Files.newOutputStream(gzipped)) {
+            NbtIo.writeGzipped(out, levelDat);
+        }
+
+        try (OutputStream out = Files.newOutputStream(small)) {
+            NbtIo.write(out, levelDat);
+        }
+
+        try (OutputStream out = Files.newOutputStream(mapped)) {
+            NbtIo.write(out, largeTag);
+        }
+
+        assertEquals(levelDat, NbtIo.read(gzipped));
+        assertEquals(levelDat, NbtIo.read(small));
+        assertEquals(largeTag, NbtIo.read(mapped));
+    }
+
+    @Test
+    void readAll(@TempDir Path dir) throws Exception {
+        List<Path> paths = new ArrayList<>();
+        List<NamedTag> expected = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            CompoundTag tag = new CompoundTag();
+            tag.putInt("Index", i);
+            NamedTag namedTag = new NamedTag("File" + i, tag);
+            Path path = dir.resolve(i + ".dat");
+
+            try (OutputStream out = Files.newOutputStream(path)) {
+                NbtIo.writeGzipped(out, namedTag);
+            }
+
+            paths.add(path);
+            expected.add(namedTag);
+        }
+
+        Path missing = dir.resolve("missing.dat");
+        paths.add(10, missing);
+        expected.add(10, null);
+
+        List<CompletableFuture<NamedTag>> futures = NbtIo.readAll(paths);
+        assertEquals(paths.size(), futures.size());
+
+        for (int i = 0; i < futures.size(); i++) {
+            if (expected.get(i) == null) {
+                CompletableFuture<NamedTag> future = futures.get(i);
+                ExecutionException e = assertThrows(ExecutionException.class, future::get);
+                assertTrue(e.getCause() instanceof NoSuchFileException);
+            } else {
+                assertEquals(expected.get(i), futures.get(i).get());
+            }
+        }
+    }
+
+    @Test
+    void compressionRoundtrip(@TempDir Path dir) throws Exception {
+        NamedTag levelDat = NbtIo.readGzipped(IoTests.class.getResourceAsStream("/level.dat"));
+        Compression[] compressions = {
+            Compression.Standard.NONE,
+            Compression.Standard.GZIP,
+            Compression.Standard.ZLIB,
+            Compression.Standard.LZ4,
+            Compression.gzip(1),
+            Compression.zlib(9),
+        };
+
+        for (Compression compression : compressions) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            NbtIo.write(out, levelDat, compression);
+            byte[] bytes = out.toByteArray();
+
+            assertEquals(compression.getStandardEquivalent(), Compression.Standard.detect(bytes, 0, bytes.length));
+            assertEquals(levelDat, NbtIo.read(new ByteArrayInputStream(bytes), compression));
+            assertEquals(levelDat, NbtIo.readDetected(new ByteArrayInputStream(bytes)));
+
+            Path path = dir.resolve(compression.getName() + ".dat");
+            Files.write(path, bytes);
+            assertEquals(levelDat, NbtIo.read(path));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> Compression.zlib(10));
+    }
+
+    @Test
+    void gzipMatchesJdkStreams() throws Exception {
+        NamedTag levelDat = NbtIo.readGzipped(IoTests.class.getResourceAsStream("/level.dat"));
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        NbtIo.write(uncompressed, levelDat);
+
+        // Written by the pooled stream, read by the JDK
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtIo.writeGzipped(out, levelDat);
+        assertArrayEquals(uncompressed.toByteArray(), readAllBytes(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))));
+
+        // Two members written by the JDK, read by the pooled stream
+        out = new ByteArrayOutputStream();
+        for (int i = 0; i < 2; i++) {
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(uncompressed.toByteArray());
+            gzip.finish();
+        }
+
+        byte[] twice = readAllBytes(Compression.Standard.GZIP.decompress(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(uncompressed.size() * 2, twice.length);
+
+        // Corrupted checksum
+        byte[] corrupt = out.toByteArray();
+        corrupt[corrupt.length / 2 - 8] ^= 1;
+        assertThrows(ZipException.class, () -> readAllBytes(Compression.Standard.GZIP.decompress(new ByteArrayInputStream(corrupt))));
+    }
+
+    @Test
+    void writeAfterClose() throws Exception {
+        for (Compression compression : Arrays.asList(Compression.Standard.GZIP, Compression.Standard.ZLIB)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            OutputStream compressed = compression.compress(out);
+            compressed.write(new byte[] { 1, 2, 3 });
+            compressed.close();
+            compressed.close();
+
+            // The pooled deflater may already be used by another stream
+            assertThrows(IOException.class, () -> compressed.write(4));
+            assertThrows(IOException.class, () -> compressed.write(new byte[] { 5, 6 }));
+            assertThrows(IOException.class, compressed::flush);
+            assertArrayEquals(new byte[] { 1, 2, 3 }, readAllBytes(compression.decompress(new ByteArrayInputStream(out.toByteArray()))));
+        }
+    }
+
+    @Test
+    void serializedSize() throws Exception {
+        NamedTag levelDat = NbtIo.readGzipped(IoTests.class.getResourceAsStream("/level.dat"));
+        byte[] bytes = NbtIo.toByteArray(levelDat);
+        assertEquals(bytes.length, levelDat.serializedSize());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtIo.write(out, levelDat);
+        assertArrayEquals(out.toByteArray(), bytes);
+
+        // Lazy compounds, before and after changes
+        NamedTag lazy = NbtIo.readLazy(new ByteArrayInputStream(bytes));
+        assertEquals(bytes.length, lazy.serializedSize());
+        CompoundTag data = (CompoundTag) ((CompoundTag) lazy.getTag()).get("Data");
+        data.putString("LevelName", "A longer level name \u00E9");
+        assertEquals(NbtIo.toByteArray(lazy).length, lazy.serializedSize());
+        data.putInt("Extra", 1);
+        assertEquals(NbtIo.toByteArray(lazy).length, lazy.serializedSize());
+
+        // Other backing maps and lists, custom types and tags with the default size computation
+        Map<String, Tag> map = new HashMap<>();
+        map.put("Boolean", new BooleanTag(true));
+        map.put("Char", new CharTag('\u20AC'));
+        map.put("String", new StringTag("\u0000\u00E9\u20AC"));
+        map.put("Bytes", new ByteArrayTag(new byte[3]));
+        map.put("Ints", new IntArrayTag(new int[5]));
+        map.put("Longs", new LongArrayTag(new long[7]));
+        map.put("Strings", new ListTag<>(Arrays.asList(new StringTag("a"), new StringTag("bc"))));
+        ListTag<IntTag> ints = new ListTag<>(TagType.Standard.INT);
+        ints.add(new IntTag(1));
+        ints.add(new IntTag(2));
+        map.put("IntList", ints);
+        map.put("Custom", new Tag() {
+            @Override
+            public TagType getType() {
+                return TagType.Standard.INT_ARRAY;
+            }
+
+            @Override
+            public void write(DataOutput output) throws IOException {
+                output.writeInt(2);
+                output.writeInt(0);
+                output.writeInt(1);
+            }
+        });
+
+        NamedTag tag = new NamedTag("Root", new CompoundTag(map));
+        NbtWriter writer = new NbtWriter();
+        tag.write(writer);
+        assertEquals(writer.size(), tag.serializedSize());
+        assertArrayEquals(writer.toByteArray(), NbtIo.toByteArray(tag));
+    }
+
+    @Test
+    void channelWrite(@TempDir Path dir) throws Exception {
+        Random random = new Random(0);
+        byte[] bytes = new byte[100_000];
+        random.nextBytes(bytes);
+        int[] ints = random.ints(10_000).toArray();
+        long[] longs = random.longs(10_000).toArray();
+
+        CompoundTag root = new CompoundTag();
+        root.putString("Name", "Channel");
+        root.put("Bytes", new ByteArrayTag(bytes));
+        root.put("SmallBytes", new ByteArrayTag(new byte[] { 1, 2, 3 }));
+        root.put("Ints", new IntArrayTag(ints));
+        root.put("Longs", new LongArrayTag(longs));
+        NamedTag tag = new NamedTag("", root);
+        byte[] expected = NbtIo.toByteArray(tag);
+
+        // File channels support gathering writes
+        Path file = dir.resolve("uncompressed.dat");
+        NbtIo.write(file, tag, Compression.Standard.NONE);
+        assertArrayEquals(expected, Files.readAllBytes(file));
+        assertEquals(tag, NbtIo.read(file));
+
+        Path gzipped = dir.resolve("gzipped.dat");
+        NbtIo.write(gzipped, tag, Compression.Standard.GZIP);
+        assertEquals(tag, NbtIo.read(gzipped));
+
+        // Other channels are written buffer by buffer
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtIo.write(Channels.newChannel(out), tag);
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @Test
+    void cachedEncoding() throws Exception {
+        NamedTag levelDat = NbtIo.readGzipped(IoTests.class.getResourceAsStream("/level.dat"));
+        CompoundTag root = (CompoundTag) levelDat.getTag();
+        CompoundTag data = root.getSubTag("Data");
+        CompoundTag player = data.getSubTag("Player");
+        long[] longs = { 1, 2, 3 };
+        data.put("Longs", new LongArrayTag(longs));
+        ListTag<CompoundTag> entities = new ListTag<>(TagType.Standard.COMPOUND);
+        CompoundTag entity = new CompoundTag();
+        entity.putString("id", "minecraft:pig");
+        entity.putInt("Age", 0);
+        ListTag<IntTag> numbers = new ListTag<>(TagType.Standard.INT);
+        numbers.add(IntTag.of(1));
+        entity.put("Numbers", numbers);
+        entities.add(entity);
+        data.put("Entities", entities);
+        ListTag<StringTag> names = new ListTag<>(TagType.Standard.STRING);
+        names.add(new StringTag("a"));
+        names.add(new StringTag("b"));
+        data.put("Names", names);
+
+        root.setEncodingCached(true);
+        assertTrue(root.isEncodingCached());
+
+        for (int i = 0; i < 3; i++) {
+            assertCached(levelDat);
+        }
+
+        // Changes anywhere in the tree, including through views and arrays
+        data.putLong("Time", 1234);
+        assertCached(levelDat);
+        entity.putInt("Age", 20);
+        assertCached(levelDat);
+        numbers.add(IntTag.of(2));
+        assertCached(levelDat);
+        longs[0] = -1;
+        assertCached(levelDat);
+        entities.add(new CompoundTag());
+        assertCached(levelDat);
+        ListIterator<StringTag> iterator = names.listIterator();
+        iterator.next();
+        iterator.set(new StringTag("c"));
+        assertCached(levelDat);
+        names.subList(0, 1).clear();
+        assertCached(levelDat);
+        player.remove("Motion");
+        assertCached(levelDat);
+        ((ListTag<?>) player.get("Inventory")).clear();
+        assertCached(levelDat);
+        data.entrySet().removeIf(entry -> entry.getKey().equals("rainTime"));
+        assertCached(levelDat);
+
+        // Moved tags and tags that occur more than once
+        entities.remove(entity);
+        data.put("Moved", entity);
+        assertCached(levelDat);
+        entity.putInt("Age", 30);
+        assertCached(levelDat);
+        data.put("Shared", entity);
+        entities.add(entity);
+        assertCached(levelDat);
+        entity.putInt("Age", 40);
+        numbers.set(0, IntTag.of(-1));
+        assertCached(levelDat);
+        data.remove("Shared");
+        assertCached(levelDat);
+
+        // Nested compounds that cache their own encoding
+        CompoundTag nested = data.getOrCreateSubTag("Nested");
+        nested.putInt("Value", 1);
+        nested.setEncodingCached(true);
+        assertCached(levelDat);
+        nested.putInt("Value", 2);
+        assertCached(levelDat);
+        nested.setEncodingCached(false);
+        assertCached(levelDat);
+        nested.putInt("Value", 3);
+        assertCached(levelDat);
+
+        // Copies don't cache their encoding or see the changes
+        CompoundTag copy = root.copy();
+        assertFalse(copy.isEncodingCached());
+        copy.getSubTag("Data").putString("LevelName", "Copy");
+        assertCached(levelDat);
+        assertNotEquals(copy, root);
+
+        data.clear();
+        assertCached(levelDat);
+        root.setEncodingCached(false);
+        assertFalse(root.isEncodingCached());
+        assertCached(levelDat);
+
+        CompoundTag persistent = root.toPersistent();
+        assertFalse(persistent.isEncodingCached());
+        assertThrows(UnsupportedOperationException.class, () -> persistent.setEncodingCached(true));
+    }
+
+    /**
+     * Checks that a tag is written like an uncached copy of it.
+     */
+    private static void assertCached(NamedTag tag) throws IOException {
+        byte[] bytes = NbtIo.toByteArray(tag);
+        assertArrayEquals(NbtIo.toByteArray(new NamedTag(tag.getName(), tag.getTag().copy())), bytes);
+        assertEquals(bytes.length, tag.serializedSize());
+    }
+
+    private static byte[] readAllBytes(InputStream in) throws Exception {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+
+            return out.toByteArray();
+        }
+    }
 }
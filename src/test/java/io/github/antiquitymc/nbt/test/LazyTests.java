@@ -0,0 +1,76 @@
+package io.github.antiquitymc.nbt.test;
+
+import io.github.antiquitymc.nbt.CompoundTag;
+import io.github.antiquitymc.nbt.NamedTag;
+import io.github.antiquitymc.nbt.NbtIo;
+import io.github.antiquitymc.nbt.NbtReader;
+import io.github.antiquitymc.nbt.NbtWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LazyTests {
+    private static byte[] readLevelDatBytes() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(LazyTests.class.getResourceAsStream("/level.dat"))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    private static byte[] encode(NamedTag tag) throws Exception {
+        NbtWriter writer = new NbtWriter();
+        tag.write(writer);
+        return writer.toByteArray();
+    }
+
+    @Test
+    void untouchedWritesOriginalBytes() throws Exception {
+        byte[] bytes = readLevelDatBytes();
+        NamedTag lazy = NbtIo.readLazy(new ByteArrayInputStream(bytes));
+
+        assertArrayEquals(bytes, encode(lazy));
+    }
+
+    @Test
+    void decodesOnAccess() throws Exception {
+        byte[] bytes = readLevelDatBytes();
+        NamedTag eager = NamedTag.read(new NbtReader(bytes));
+        NamedTag lazy = NbtIo.readLazy(new ByteArrayInputStream(bytes));
+
+        CompoundTag data = ((CompoundTag) lazy.getTag()).getSubTag("Data");
+        assertEquals(((CompoundTag) eager.getTag()).getSubTag("Data").getLong("Time"), data.getLong("Time"));
+
+        // Reading alone keeps the original encoding
+        assertArrayEquals(bytes, encode(lazy));
+        assertEquals(eager, lazy);
+    }
+
+    @Test
+    void modificationsAreWritten() throws Exception {
+        byte[] bytes = readLevelDatBytes();
+        NamedTag eager = NamedTag.read(new NbtReader(bytes));
+        NamedTag lazy = NbtIo.readLazy(new ByteArrayInputStream(bytes));
+
+        // A nested change without touching the root's entries
+        ((CompoundTag) lazy.getTag()).getSubTag("Data").getSubTag("Player").putInt("Score", 1234);
+        ((CompoundTag) eager.getTag()).getSubTag("Data").getSubTag("Player").putInt("Score", 1234);
+        assertEquals(eager, NamedTag.read(new NbtReader(encode(lazy))));
+
+        // A change to the root's entries
+        ((CompoundTag) lazy.getTag()).remove("Data");
+        ((CompoundTag) eager.getTag()).remove("Data");
+        assertEquals(eager, NamedTag.read(new NbtReader(encode(lazy))));
+    }
+}
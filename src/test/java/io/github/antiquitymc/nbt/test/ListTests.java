@@ -0,0 +1,88 @@
+package io.github.antiquitymc.nbt.test;
+
+import io.github.antiquitymc.nbt.DoubleTag;
+import io.github.antiquitymc.nbt.FloatTag;
+import io.github.antiquitymc.nbt.IntTag;
+import io.github.antiquitymc.nbt.ListTag;
+import io.github.antiquitymc.nbt.LongTag;
+import io.github.antiquitymc.nbt.NbtReader;
+import io.github.antiquitymc.nbt.NbtWriter;
+import io.github.antiquitymc.nbt.StringTag;
+import io.github.antiquitymc.nbt.Tag;
+import io.github.antiquitymc.nbt.TagType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ListTests {
+    @Test
+    void primitiveLists() throws Exception {
+        ListTag<IntTag> ints = new ListTag<>(TagType.Standard.INT);
+        List<IntTag> expected = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            ints.add(new IntTag(i * 31));
+            expected.add(new IntTag(i * 31));
+        }
+
+        ints.add(0, new IntTag(-1));
+        expected.add(0, new IntTag(-1));
+        ints.remove(50);
+        expected.remove(50);
+        ints.set(10, new IntTag(1234));
+        expected.set(10, new IntTag(1234));
+        ints.subList(20, 30).clear();
+        expected.subList(20, 30).clear();
+
+        assertEquals(expected, ints);
+        assertEquals(expected.hashCode(), new ArrayList<>(ints).hashCode());
+        assertEquals(1234, ints.getInt(10));
+        assertThrows(IndexOutOfBoundsException.class, () -> ints.get(ints.size()));
+        assertThrows(ClassCastException.class, () -> ints.getLong(0));
+
+        Iterator<IntTag> iterator = ints.iterator();
+        iterator.next();
+        ints.add(new IntTag(0));
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+
+        ListTag<DoubleTag> doubles = new ListTag<>(TagType.Standard.DOUBLE);
+        doubles.addAll(Arrays.asList(new DoubleTag(1.5), new DoubleTag(-64), new DoubleTag(Double.NaN)));
+        ListTag<FloatTag> floats = new ListTag<>(TagType.Standard.FLOAT);
+        floats.addAll(Arrays.asList(new FloatTag(90f), new FloatTag(-0f)));
+        ListTag<LongTag> longs = new ListTag<>(TagType.Standard.LONG);
+        longs.add(new LongTag(Long.MAX_VALUE));
+
+        // Primitive lists are written like lists of tag objects
+        for (ListTag<?> list : Arrays.<ListTag<?>>asList(ints, doubles, floats, longs)) {
+            ListTag<Tag> boxed = new ListTag<>(list.getElementType(), new ArrayList<>(list));
+
+            NbtWriter writer = new NbtWriter();
+            list.write(writer);
+            NbtWriter boxedWriter = new NbtWriter();
+            boxed.write(boxedWriter);
+            assertArrayEquals(boxedWriter.toByteArray(), writer.toByteArray());
+
+            ListTag<?> read = ListTag.read(new NbtReader(writer.toByteArray()));
+            assertEquals(boxed, read);
+            assertEquals(list.getElementType(), read.getElementType());
+        }
+
+        assertEquals(-64, doubles.getDouble(1));
+        assertEquals(-0f, floats.getFloat(1));
+        assertEquals(Long.MAX_VALUE, longs.getLong(0));
+        assertEquals("[1.5, -64.0, NaN]", Arrays.toString(doubles.stream().mapToDouble(DoubleTag::getValue).toArray()));
+
+        // Lists of tag objects still work with the typed getters
+        ListTag<IntTag> boxedInts = new ListTag<>(new ArrayList<>(Arrays.asList(new IntTag(5), new IntTag(6))));
+        assertEquals(6, boxedInts.getInt(1));
+        assertThrows(ClassCastException.class, () -> new ListTag<>(Arrays.asList(new StringTag("a"))).getInt(0));
+    }
+}
@@ -0,0 +1,173 @@
+package io.github.antiquitymc.nbt.test;
+
+import io.github.antiquitymc.nbt.CompoundTag;
+import io.github.antiquitymc.nbt.IntTag;
+import io.github.antiquitymc.nbt.ListTag;
+import io.github.antiquitymc.nbt.NamedTag;
+import io.github.antiquitymc.nbt.NbtIo;
+import io.github.antiquitymc.nbt.NbtReader;
+import io.github.antiquitymc.nbt.StringTag;
+import io.github.antiquitymc.nbt.Tag;
+import io.github.antiquitymc.nbt.TagType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersistentTests {
+    @Test
+    void compoundMatchesHashMap() {
+        Random random = new Random(0);
+        Map<String, Tag> expected = new HashMap<>();
+        CompoundTag tag = new CompoundTag().toPersistent();
+        List<CompoundTag> snapshots = new ArrayList<>();
+        List<Map<String, Tag>> expectedSnapshots = new ArrayList<>();
+
+        for (int i = 0; i < 5000; i++) {
+            // Strings made of "Aa" and "BB" blocks have equal hash codes
+            String key = random.nextBoolean() ? "Key" + random.nextInt(500) : collidingKey(random.nextInt(16));
+
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                tag = tag.without(key);
+            } else {
+                IntTag value = new IntTag(i);
+                expected.put(key, value);
+                tag = tag.with(key, value);
+            }
+
+            if (i % 500 == 0) {
+                snapshots.add(tag);
+                expectedSnapshots.add(new HashMap<>(expected));
+            }
+        }
+
+        assertEquals(expected, tag);
+        assertEquals(expected.size(), tag.size());
+        assertEquals(new CompoundTag(expected).hashCode(), tag.hashCode());
+
+        for (String key : expected.keySet()) {
+            assertEquals(expected.get(key), tag.get(key));
+        }
+
+        // Earlier versions are not affected by later changes
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertEquals(expectedSnapshots.get(i), snapshots.get(i));
+        }
+
+        for (String key : new ArrayList<>(expected.keySet())) {
+            tag = tag.without(key);
+        }
+
+        assertTrue(tag.isEmpty());
+        assertNull(tag.get("Key0"));
+    }
+
+    private static String collidingKey(int bits) {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 4; i++) {
+            builder.append((bits & (1 << i)) != 0 ? "Aa" : "BB");
+        }
+
+        return builder.toString();
+    }
+
+    @Test
+    void listMatchesArrayList() {
+        List<IntTag> expected = new ArrayList<>();
+        ListTag<IntTag> list = new ListTag<IntTag>(TagType.Standard.INT).toPersistent();
+        ListTag<IntTag> middle = null;
+
+        for (int i = 0; i < 40_000; i++) {
+            expected.add(new IntTag(i));
+            list = list.withAdded(new IntTag(i));
+
+            if (i == 1056) {
+                middle = list;
+            }
+        }
+
+        for (int i = 0; i < expected.size(); i += 97) {
+            expected.set(i, new IntTag(-i));
+            list = list.with(i, new IntTag(-i));
+        }
+
+        assertEquals(expected, list);
+
+        while (expected.size() > 20) {
+            expected.remove(expected.size() - 1);
+            list = list.withoutLast();
+
+            if (expected.size() % 1000 == 0) {
+                assertEquals(expected, list);
+            }
+        }
+
+        assertEquals(expected, list);
+        ListTag<IntTag> snapshot = middle;
+        assertEquals(1057, snapshot.size());
+        assertEquals(new IntTag(1056), snapshot.get(1056));
+
+        while (!list.isEmpty()) {
+            list = list.withoutLast();
+        }
+
+        assertThrows(NoSuchElementException.class, list::withoutLast);
+        assertThrows(IndexOutOfBoundsException.class, () -> snapshot.get(1057));
+    }
+
+    @Test
+    void deepConversion() throws Exception {
+        NamedTag levelDat = NbtIo.readGzipped(PersistentTests.class.getResourceAsStream("/level.dat"));
+        CompoundTag mutable = (CompoundTag) levelDat.getTag();
+        CompoundTag persistent = mutable.toPersistent();
+
+        assertTrue(persistent.isPersistent());
+        assertFalse(mutable.isPersistent());
+        assertSame(persistent, persistent.toPersistent());
+        assertEquals(mutable, persistent);
+
+        // Nested compounds and lists are persistent too
+        CompoundTag data = (CompoundTag) persistent.get("Data");
+        assertTrue(data.isPersistent());
+        assertThrows(UnsupportedOperationException.class, () -> data.putInt("Key", 1));
+        assertThrows(UnsupportedOperationException.class, () -> persistent.remove("Data"));
+        assertThrows(UnsupportedOperationException.class, persistent::clear);
+
+        // Persistent tags are written like any other tags
+        NamedTag written = new NamedTag(levelDat.getName(), persistent);
+        assertEquals(levelDat, NamedTag.read(new NbtReader(NbtIo.toByteArray(written))));
+
+        // Values added with "with" are converted
+        CompoundTag child = new CompoundTag();
+        child.putString("Name", "child");
+        CompoundTag updated = persistent.with("Child", child);
+        child.putString("Name", "changed");
+        assertEquals("child", ((CompoundTag) updated.get("Child")).getString("Name"));
+        assertFalse(persistent.containsKey("Child"));
+        assertSame(persistent, persistent.without("Missing"));
+
+        ListTag<StringTag> strings = new ListTag<>(TagType.Standard.STRING);
+        strings.add(new StringTag("a"));
+        ListTag<StringTag> persistentStrings = strings.withAdded(new StringTag("b"));
+        assertEquals(1, strings.size());
+        assertEquals(2, persistentStrings.size());
+        assertThrows(UnsupportedOperationException.class, () -> persistentStrings.add(new StringTag("c")));
+        // Bypass the element type to check it at runtime
+        @SuppressWarnings("unchecked")
+        ListTag<Tag> untyped = (ListTag<Tag>) (ListTag<?>) persistentStrings;
+        assertThrows(IllegalArgumentException.class, () -> untyped.withAdded(new IntTag(0)));
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.antiquitymc.nbt.test;
+
+import io.github.antiquitymc.nbt.ByteArrayTag;
+import io.github.antiquitymc.nbt.CompoundTag;
+import io.github.antiquitymc.nbt.Compression;
+import io.github.antiquitymc.nbt.NamedTag;
+import io.github.antiquitymc.nbt.region.RegionFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionFileTests {
+    private static NamedTag chunk(int x, int z, int dataSize) {
+        CompoundTag tag = new CompoundTag();
+        tag.putInt("xPos", x);
+        tag.putInt("zPos", z);
+
+        // Random data doesn't compress, so the chunk size is predictable
+        byte[] data = new byte[dataSize];
+        new Random(x * 31L + z).nextBytes(data);
+        tag.put("Data", new ByteArrayTag(data));
+        return new NamedTag("", tag);
+    }
+
+    @Test
+    void writeAndRead(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("r.0.0.mca");
+        NamedTag a = chunk(0, 0, 100);
+        NamedTag b = chunk(5, 7, 100);
+        NamedTag c = chunk(31, 31, 100);
+        NamedTag d = chunk(0, 1, 100);
+
+        try (RegionFile region = new RegionFile(path)) {
+            assertFalse(region.hasChunk(0, 0));
+            assertNull(region.readChunk(0, 0));
+
+            region.writeChunk(0, 0, a);
+            region.writeChunk(5, 7, b, Compression.Standard.GZIP);
+            region.writeChunk(-1, -1, c, Compression.Standard.NONE);
+            region.writeChunk(0, 1, d, Compression.Standard.LZ4);
+
+            assertEquals(a, region.readChunk(0, 0));
+            assertEquals(b, region.readChunk(5, 7));
+            assertEquals(c, region.readChunk(31, 31));
+            assertEquals(d, region.readChunk(0, 1));
+            assertTrue(region.getTimestamp(5, 7) > 0);
+        }
+
+        assertEquals(0, Files.size(path) % 4096);
+
+        try (RegionFile region = new RegionFile(path)) {
+            List<NamedTag> chunks = new ArrayList<>();
+            region.forEachChunk((x, z, tag) -> chunks.add(tag));
+
+            List<NamedTag> expected = new ArrayList<>();
+            expected.add(a);
+            expected.add(d);
+            expected.add(b);
+            expected.add(c);
+            assertEquals(expected, chunks);
+        }
+    }
+
+    @Test
+    void relocateAndReuseSectors(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("r.0.0.mca");
+
+        try (RegionFile region = new RegionFile(path)) {
+            region.writeChunk(0, 0, chunk(0, 0, 100));
+            region.writeChunk(1, 0, chunk(1, 0, 100));
+            long size = Files.size(path);
+
+            // Growing the first chunk moves it to the end of the file
+            NamedTag large = chunk(0, 0, 10000);
+            region.writeChunk(0, 0, large);
+            assertEquals(large, region.readChunk(0, 0));
+            assertEquals(chunk(1, 0, 100), region.readChunk(1, 0));
+            assertTrue(Files.size(path) > size);
+            size = Files.size(path);
+
+            // A small chunk fits in the sector freed by the move
+            region.writeChunk(2, 0, chunk(2, 0, 100));
+            assertEquals(size, Files.size(path));
+
+            // Shrinking the large chunk keeps it in place
+            region.writeChunk(0, 0, chunk(0, 0, 50));
+            assertEquals(chunk(0, 0, 50), region.readChunk(0, 0));
+            assertEquals(size, Files.size(path));
+
+            region.deleteChunk(1, 0);
+            assertFalse(region.hasChunk(1, 0));
+            assertEquals(chunk(2, 0, 100), region.readChunk(2, 0));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.antiquitymc.nbt.test;
+
+import io.github.antiquitymc.nbt.CompoundTag;
+import io.github.antiquitymc.nbt.NamedTag;
+import io.github.antiquitymc.nbt.NbtIo;
+import io.github.antiquitymc.nbt.TagSelector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SelectorTests {
+    private static NamedTag readLevelDat(TagSelector selector) throws Exception {
+        return NbtIo.readGzipped(SelectorTests.class.getResourceAsStream("/level.dat"), selector);
+    }
+
+    @Test
+    void selectPaths() throws Exception {
+        CompoundTag full = (CompoundTag) NbtIo.readGzipped(SelectorTests.class.getResourceAsStream("/level.dat")).getTag();
+        NamedTag read = readLevelDat(TagSelector.of("Data.Time", "Data.Player.abilities", "Data.Player.Missing", "Data.Version.Name"));
+
+        CompoundTag expected = new CompoundTag();
+        CompoundTag data = expected.getOrCreateSubTag("Data");
+        data.put("Time", full.getSubTag("Data").get("Time"));
+        data.getOrCreateSubTag("Player").put("abilities", full.getSubTag("Data").getSubTag("Player").get("abilities"));
+        data.getOrCreateSubTag("Version").putString("Name", full.getSubTag("Data").getSubTag("Version").getString("Name"));
+
+        assertEquals(new NamedTag("", expected), read);
+    }
+
+    @Test
+    void selectAll() throws Exception {
+        NamedTag full = NbtIo.readGzipped(SelectorTests.class.getResourceAsStream("/level.dat"));
+
+        assertEquals(full, readLevelDat(TagSelector.ofPaths(Collections.singleton(Collections.emptyList()))));
+        assertEquals(full, readLevelDat(TagSelector.ofPaths(Collections.singleton(Arrays.asList("Data")))));
+        assertEquals(new NamedTag("", new CompoundTag()), readLevelDat(TagSelector.of()));
+    }
+}
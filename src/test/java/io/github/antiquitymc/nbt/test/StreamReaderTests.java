@@ -0,0 +1,153 @@
+package io.github.antiquitymc.nbt.test;
+
+import io.github.antiquitymc.nbt.BooleanTag;
+import io.github.antiquitymc.nbt.CompoundTag;
+import io.github.antiquitymc.nbt.IntTag;
+import io.github.antiquitymc.nbt.ListTag;
+import io.github.antiquitymc.nbt.NamedTag;
+import io.github.antiquitymc.nbt.NbtIo;
+import io.github.antiquitymc.nbt.NbtReader;
+import io.github.antiquitymc.nbt.NbtStreamReader;
+import io.github.antiquitymc.nbt.NbtStreamReader.Event;
+import io.github.antiquitymc.nbt.NbtWriter;
+import io.github.antiquitymc.nbt.Tag;
+import io.github.antiquitymc.nbt.TagType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamReaderTests {
+    private static byte[] encode(NamedTag tag) throws Exception {
+        NbtWriter writer = new NbtWriter();
+        tag.write(writer);
+        return writer.toByteArray();
+    }
+
+    @Test
+    void events() throws Exception {
+        CompoundTag root = new CompoundTag();
+        root.putBoolean("Flag", true);
+        ListTag<IntTag> list = new ListTag<>(TagType.Standard.INT);
+        list.add(new IntTag(1));
+        list.add(new IntTag(2));
+        root.put("List", list);
+        root.putString("Skipped", "never decoded");
+
+        NbtStreamReader reader = new NbtStreamReader(new NbtReader(encode(new NamedTag("Root", root))));
+        assertEquals(Event.START_COMPOUND, reader.next());
+        assertEquals("Root", reader.getName());
+        assertEquals(0, reader.getDepth());
+
+        int values = 0;
+        while (reader.next() != Event.END_COMPOUND || reader.getDepth() > 0) {
+            if ("Flag".equals(reader.getName())) {
+                assertTrue(reader.getBoolean());
+                assertTrue(reader.readTag(TagType.Antiquity.BOOLEAN) instanceof BooleanTag);
+            } else if (reader.getEvent() == Event.START_LIST) {
+                assertEquals(TagType.Standard.INT, reader.getListElementType());
+                assertEquals(2, reader.getListSize());
+            } else if (reader.getEvent() == Event.VALUE && reader.getTagType() == TagType.Standard.INT) {
+                assertNull(reader.getName());
+                assertEquals(2, reader.getDepth());
+                values += reader.getInt();
+            }
+        }
+
+        assertEquals(3, values);
+        assertEquals(Event.END_DOCUMENT, reader.next());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    void readNumericList() throws Exception {
+        CompoundTag root = new CompoundTag();
+        ListTag<IntTag> list = new ListTag<>(TagType.Standard.INT);
+        for (int i = 0; i < 100; i++) {
+            list.add(new IntTag(i));
+        }
+        root.put("List", list);
+
+        NbtStreamReader reader = new NbtStreamReader(new NbtReader(encode(new NamedTag("", root))));
+        assertEquals(Event.START_COMPOUND, reader.next());
+        assertEquals(Event.START_LIST, reader.next());
+
+        ListTag<?> read = (ListTag<?>) reader.readTag();
+        assertEquals(Event.END_LIST, reader.getEvent());
+        assertEquals(list, read);
+        assertEquals(99, read.getInt(99));
+        assertEquals(Event.END_COMPOUND, reader.next());
+    }
+
+    @Test
+    void rebuildLevelDat() throws Exception {
+        NamedTag expected = NbtIo.readGzipped(StreamReaderTests.class.getResourceAsStream("/level.dat"));
+        NbtStreamReader reader = new NbtStreamReader(new NbtReader(new GZIPInputStream(StreamReaderTests.class.getResourceAsStream("/level.dat"))));
+
+        // Rebuild the tree from events to check that nothing is lost
+        Deque<Tag> containers = new ArrayDeque<>();
+        Deque<String> names = new ArrayDeque<>();
+        NamedTag actual = null;
+
+        while (reader.next() != Event.END_DOCUMENT) {
+            Tag tag;
+            String name = reader.getName();
+
+            switch (reader.getEvent()) {
+                case START_COMPOUND:
+                    containers.push(new CompoundTag());
+                    names.push(name == null ? "" : name);
+                    continue;
+                case START_LIST:
+                    containers.push(new ListTag<>(reader.getListElementType()));
+                    names.push(name == null ? "" : name);
+                    continue;
+                case END_COMPOUND:
+                case END_LIST:
+                    tag = containers.pop();
+                    name = names.pop();
+                    break;
+                default:
+                    tag = reader.readTag();
+                    break;
+            }
+
+            if (containers.isEmpty()) {
+                actual = new NamedTag(name, tag);
+            } else {
+                add(containers.peek(), name, tag);
+            }
+        }
+
+        assertEquals(expected, actual);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void add(Tag container, String name, Tag tag) {
+        if (container instanceof CompoundTag) {
+            ((CompoundTag) container).put(name, tag);
+        } else {
+            ((ListTag<Tag>) container).add(tag);
+        }
+    }
+
+    @Test
+    void skipChildren() throws Exception {
+        CompoundTag root = new CompoundTag();
+        root.getOrCreateSubTag("Skipped").getOrCreateSubTag("Nested").putString("A", "B");
+
+        NbtStreamReader reader = new NbtStreamReader(new NbtReader(encode(new NamedTag("", root))));
+        assertEquals(Event.START_COMPOUND, reader.next());
+        assertEquals(Event.START_COMPOUND, reader.next());
+        reader.skipChildren();
+        assertEquals(Event.END_COMPOUND, reader.getEvent());
+        assertEquals(Event.END_COMPOUND, reader.next());
+        assertEquals(Event.END_DOCUMENT, reader.next());
+    }
+}